@@ -0,0 +1,162 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.exception;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static java.lang.String.format;
+
+/**
+ * An {@link AttemptHistory} records the most recent executions of a computation in a fixed-size ring buffer: when each
+ * execution started relative to the start of the computation, how long it took and which exception it threw, if any.
+ * Timings are held in primitive arrays and only a capped number of the most recent exceptions is retained, so memory
+ * stays bounded no matter how many executions are recorded. Not thread-safe.
+ *
+ * @author Gabriel Diegel
+ */
+public final class AttemptHistory {
+
+    /**
+     * Default number of executions retained.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Default number of exceptions retained.
+     */
+    public static final int DEFAULT_RETAINED_CAUSES = 3;
+
+    private final long[] startOffsets;
+    private final long[] durations;
+    private final Class<?>[] exceptionClasses;
+    private final Exception[] causes;
+    private long attempts;
+    private long causeCount;
+
+    /**
+     * Construct an {@link AttemptHistory} retaining the default number of executions and exceptions.
+     */
+    public AttemptHistory() {
+        this(DEFAULT_CAPACITY, DEFAULT_RETAINED_CAUSES);
+    }
+
+    /**
+     * Construct an {@link AttemptHistory}.
+     *
+     * @param capacity       the number of most recent executions to retain
+     * @param retainedCauses the number of most recent exceptions to retain
+     */
+    public AttemptHistory(final int capacity, final int retainedCauses) {
+        checkArgument(capacity > 0, format("Capacity: [%s]", capacity));
+        checkArgument(retainedCauses >= 0, format("Retained causes: [%s]", retainedCauses));
+        this.startOffsets = new long[capacity];
+        this.durations = new long[capacity];
+        this.exceptionClasses = new Class<?>[capacity];
+        this.causes = new Exception[retainedCauses];
+    }
+
+    /**
+     * Record an execution.
+     *
+     * @param startOffset the start of the execution in nanoseconds, relative to the start of the computation
+     * @param duration    the duration of the execution in nanoseconds
+     * @param exception   the exception thrown by the execution, {@code null} if it returned normally
+     */
+    public void record(final long startOffset, final long duration, final Exception exception) {
+        final int slot = (int) (attempts % startOffsets.length);
+        startOffsets[slot] = startOffset;
+        durations[slot] = duration;
+        exceptionClasses[slot] = exception == null ? null : exception.getClass();
+        attempts++;
+        if (exception != null && causes.length > 0) {
+            causes[(int) (causeCount % causes.length)] = exception;
+            causeCount++;
+        }
+    }
+
+    /**
+     * @return The total number of executions recorded, including those no longer retained
+     */
+    public long attempts() {
+        return attempts;
+    }
+
+    /**
+     * @return The number of executions retained
+     */
+    public int size() {
+        return (int) Math.min(attempts, startOffsets.length);
+    }
+
+    /**
+     * @param index the index of a retained execution, 0 being the oldest
+     * @return The start of the execution relative to the start of the computation
+     */
+    public Duration startOffset(final int index) {
+        return Duration.ofNanos(startOffsets[slot(index)]);
+    }
+
+    /**
+     * @param index the index of a retained execution, 0 being the oldest
+     * @return The duration of the execution
+     */
+    public Duration duration(final int index) {
+        return Duration.ofNanos(durations[slot(index)]);
+    }
+
+    /**
+     * @param index the index of a retained execution, 0 being the oldest
+     * @return The class of the exception thrown by the execution, {@code null} if it returned normally
+     */
+    public Class<?> exceptionClass(final int index) {
+        return exceptionClasses[slot(index)];
+    }
+
+    /**
+     * @return The most recent exceptions retained, oldest first
+     */
+    public List<Exception> causes() {
+        final int retained = (int) Math.min(causeCount, causes.length);
+        final List<Exception> list = new ArrayList<>(retained);
+        for (long i = causeCount - retained; i < causeCount; i++) {
+            list.add(causes[(int) (i % causes.length)]);
+        }
+        return list;
+    }
+
+    private int slot(final int index) {
+        checkElementIndex(index, size());
+        return (int) ((attempts - size() + index) % startOffsets.length);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder(format("%d executions", attempts));
+        if (size() < attempts) {
+            builder.append(format(", last %d", size()));
+        }
+        builder.append(':');
+        for (int index = 0; index < size(); index++) {
+            final Class<?> exceptionClass = exceptionClass(index);
+            builder.append(format(" [+%s %s %s]", startOffset(index), duration(index), exceptionClass == null ? "returned" : exceptionClass.getName()));
+        }
+        return builder.toString();
+    }
+}
@@ -15,6 +15,10 @@
  */
 package io.github.gdiegel.retry.exception;
 
+import java.util.Optional;
+
+import static java.lang.String.format;
+
 /**
  * A {@link RetriesExhaustedException}
  *
@@ -22,6 +26,18 @@ package io.github.gdiegel.retry.exception;
  */
 public class RetriesExhaustedException extends RuntimeException {
 
+    private static final String RETRIES_OR_EXECUTIONS_EXHAUSTED = "Retries or executions exhausted";
+
+    private final transient AttemptHistory attemptHistory;
+
+    /**
+     * Construct a new {@link RetriesExhaustedException} for a computation which was exhausted before its first
+     * execution
+     */
+    public RetriesExhaustedException() {
+        this(RETRIES_OR_EXECUTIONS_EXHAUSTED);
+    }
+
     /**
      * Construct a new {@link RetriesExhaustedException}
      *
@@ -29,6 +45,37 @@ public class RetriesExhaustedException extends RuntimeException {
      */
     public RetriesExhaustedException(final String message) {
         super(message);
+        this.attemptHistory = null;
+    }
+
+    /**
+     * Construct a new {@link RetriesExhaustedException} carrying the {@link AttemptHistory} of the computation. The
+     * exceptions retained by the history are added as suppressed exceptions.
+     *
+     * @param message        The message to use for this exception
+     * @param attemptHistory The {@link AttemptHistory} of the exhausted computation
+     */
+    public RetriesExhaustedException(final String message, final AttemptHistory attemptHistory) {
+        super(format("%s after %d executions", message, attemptHistory.attempts()));
+        this.attemptHistory = attemptHistory;
+        attemptHistory.causes().forEach(this::addSuppressed);
+    }
+
+    /**
+     * Construct a new {@link RetriesExhaustedException} carrying the {@link AttemptHistory} of the computation. The
+     * exceptions retained by the history are added as suppressed exceptions.
+     *
+     * @param attemptHistory The {@link AttemptHistory} of the exhausted computation
+     */
+    public RetriesExhaustedException(final AttemptHistory attemptHistory) {
+        this(RETRIES_OR_EXECUTIONS_EXHAUSTED, attemptHistory);
+    }
+
+    /**
+     * @return The {@link AttemptHistory} of the exhausted computation, if recorded
+     */
+    public Optional<AttemptHistory> getAttemptHistory() {
+        return Optional.ofNullable(attemptHistory);
     }
 
 }
@@ -0,0 +1,60 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.exception;
+
+import java.time.Duration;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A {@link RetryAfterException} may be thrown by the computation to suggest when the next execution should happen,
+ * e.g. after a dependency answered with HTTP 429 or 503 and a {@code Retry-After} header. The suggested delay is
+ * honoured by default, within the interval bounds of the policy, as long as the exception is ignorable.
+ *
+ * @author Gabriel Diegel
+ */
+public class RetryAfterException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    /**
+     * Construct a new {@link RetryAfterException}
+     *
+     * @param retryAfter The suggested delay before the next execution
+     */
+    public RetryAfterException(final Duration retryAfter) {
+        this("Retry after " + retryAfter, retryAfter);
+    }
+
+    /**
+     * Construct a new {@link RetryAfterException}
+     *
+     * @param message    The message to use for this exception
+     * @param retryAfter The suggested delay before the next execution
+     */
+    public RetryAfterException(final String message, final Duration retryAfter) {
+        super(message);
+        this.retryAfter = checkNotNull(retryAfter, "retryAfter");
+    }
+
+    /**
+     * @return The suggested delay before the next execution
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+}
@@ -15,6 +15,8 @@
  */
 package io.github.gdiegel.retry.exception;
 
+import java.util.Optional;
+
 /**
  * A {@link RetryException}
  *
@@ -22,6 +24,8 @@ package io.github.gdiegel.retry.exception;
  */
 public class RetryException extends RuntimeException {
 
+    private final transient AttemptHistory attemptHistory;
+
     /**
      * Construct a new {@link RetryException}
      *
@@ -29,6 +33,27 @@ public class RetryException extends RuntimeException {
      */
     public RetryException(final Exception cause) {
         super(cause);
+        this.attemptHistory = null;
+    }
+
+    /**
+     * Construct a new {@link RetryException} carrying the {@link AttemptHistory} of the computation. The exceptions
+     * retained by the history, other than the cause, are added as suppressed exceptions.
+     *
+     * @param cause          The cause to use for this exception
+     * @param attemptHistory The {@link AttemptHistory} of the failed computation
+     */
+    public RetryException(final Exception cause, final AttemptHistory attemptHistory) {
+        super(cause);
+        this.attemptHistory = attemptHistory;
+        attemptHistory.causes().stream().filter(exception -> exception != cause).forEach(this::addSuppressed);
+    }
+
+    /**
+     * @return The {@link AttemptHistory} of the failed computation, if recorded
+     */
+    public Optional<AttemptHistory> getAttemptHistory() {
+        return Optional.ofNullable(attemptHistory);
     }
 
 }
@@ -0,0 +1,250 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.executor;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Iterables;
+import io.github.gdiegel.retry.exception.AttemptHistory;
+import io.github.gdiegel.retry.exception.RetriesExhaustedException;
+import io.github.gdiegel.retry.exception.RetryException;
+import io.github.gdiegel.retry.policy.RetryPolicy;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+/**
+ * A {@link BatchingRetryExecutor} of {@code KEY} and {@code RESULT} polls many keys at once through a bulk {@link
+ * Function}, e.g. a bulk status API, instead of executing one computation per key. The stop condition of the {@link
+ * RetryPolicy} is evaluated per key and every round only polls the keys which are still pending, so the bulk calls
+ * shrink as keys resolve. The future of a key completes as soon as its key resolves.
+ * <p>
+ * Keys are split into batches of at most the configured maximum size. Batches are polled independently and
+ * concurrently on the given {@link ScheduledExecutorService}, waiting for the {@link
+ * io.github.gdiegel.retry.ratelimit.Pacer} before every round and between rounds for the longest delay suggested for
+ * any pending key (see {@link RetryPolicy#delayAfter(Object)}), without occupying a thread. Every round counts as one
+ * execution of every key it polls. When a batch is exhausted, its pending keys complete with their last result, or
+ * exceptionally with a {@link RetriesExhaustedException} carrying the {@link AttemptHistory} of the batch if the policy
+ * is throwing. A non-ignorable exception completes all pending keys of the batch exceptionally with a {@link
+ * RetryException}. Cancelling the future of a key stops polling it.
+ *
+ * @param <KEY>    the type of the keys to poll
+ * @param <RESULT> the type of the result of the computation for a single key
+ * @author Gabriel Diegel
+ */
+public final class BatchingRetryExecutor<KEY, RESULT> {
+
+    private static final String MAXIMUM_BATCH_SIZE_FORMAT = "Maximum batch size: [%s]";
+
+    private final RetryPolicy<RESULT> retryPolicy;
+    private final ScheduledExecutorService scheduler;
+    private final int maximumBatchSize;
+    private final Ticker ticker;
+
+    /**
+     * Construct an instance of {@link BatchingRetryExecutor} polling all keys in a single batch.
+     *
+     * @param retryPolicy The {@link RetryPolicy} to use for every key
+     * @param scheduler   The {@link ScheduledExecutorService} to poll on
+     */
+    public BatchingRetryExecutor(final RetryPolicy<RESULT> retryPolicy, final ScheduledExecutorService scheduler) {
+        this(retryPolicy, scheduler, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Construct an instance of {@link BatchingRetryExecutor} polling keys in batches of at most the given size.
+     *
+     * @param retryPolicy      The {@link RetryPolicy} to use for every key
+     * @param scheduler        The {@link ScheduledExecutorService} to poll on
+     * @param maximumBatchSize The maximum number of keys passed to a single bulk call
+     */
+    public BatchingRetryExecutor(final RetryPolicy<RESULT> retryPolicy, final ScheduledExecutorService scheduler, final int maximumBatchSize) {
+        this(retryPolicy, scheduler, maximumBatchSize, Ticker.systemTicker());
+    }
+
+    /**
+     * Construct an instance of {@link BatchingRetryExecutor} polling keys in batches of at most the given size, which
+     * measures elapsed time with the given {@link Ticker}.
+     *
+     * @param retryPolicy      The {@link RetryPolicy} to use for every key
+     * @param scheduler        The {@link ScheduledExecutorService} to poll on
+     * @param maximumBatchSize The maximum number of keys passed to a single bulk call
+     * @param ticker           The {@link Ticker} to measure elapsed time with
+     */
+    public BatchingRetryExecutor(final RetryPolicy<RESULT> retryPolicy, final ScheduledExecutorService scheduler, final int maximumBatchSize,
+                                 final Ticker ticker) {
+        checkArgument(maximumBatchSize > 0, format(MAXIMUM_BATCH_SIZE_FORMAT, maximumBatchSize));
+        this.retryPolicy = checkNotNull(retryPolicy, "retryPolicy");
+        this.scheduler = checkNotNull(scheduler, "scheduler");
+        this.maximumBatchSize = maximumBatchSize;
+        this.ticker = checkNotNull(ticker, "ticker");
+    }
+
+    /**
+     * Poll the given keys until every key's result matches the stop condition or its batch is exhausted.
+     *
+     * @param keys the keys to poll
+     * @param bulk the bulk {@link Function} returning the current {@code RESULT} of every key it was passed, keys
+     *             without a result may be omitted
+     * @return A {@link CompletableFuture} of an {@link Optional} of {@code RESULT} for every key
+     */
+    public Map<KEY, CompletableFuture<Optional<RESULT>>> execute(final Set<KEY> keys, final Function<Set<KEY>, Map<KEY, RESULT>> bulk) {
+        checkNotNull(keys, "keys");
+        checkNotNull(bulk, "bulk");
+        final Map<KEY, CompletableFuture<Optional<RESULT>>> futures = new LinkedHashMap<>();
+        for (final KEY key : keys) {
+            futures.put(checkNotNull(key, "key"), new CompletableFuture<>());
+        }
+        if (futures.isEmpty()) {
+            return Map.of();
+        }
+        if (retryPolicy.maximumExecutions() == 0) {
+            futures.values().forEach(future -> future.complete(Optional.empty()));
+            return Collections.unmodifiableMap(futures);
+        }
+        final long startTime = ticker.read();
+        for (final List<KEY> partition : Iterables.partition(futures.keySet(), Math.min(maximumBatchSize, futures.size()))) {
+            final Batch batch = new Batch(partition, futures, bulk, new ExecutionBudget(retryPolicy, startTime));
+            scheduler.execute(batch::start);
+        }
+        return Collections.unmodifiableMap(futures);
+    }
+
+    /**
+     * The pending keys of a single batch together with their futures and last results. Only ever accessed by one
+     * thread at a time, as every round schedules the next one.
+     */
+    private final class Batch {
+
+        private final Map<KEY, CompletableFuture<Optional<RESULT>>> pending = new LinkedHashMap<>();
+        private final Map<KEY, RESULT> lastResults = new HashMap<>();
+        private final Function<Set<KEY>, Map<KEY, RESULT>> bulk;
+        private final ExecutionBudget budget;
+        private final AttemptHistory history = new AttemptHistory();
+        private long executions;
+
+        private Batch(final List<KEY> keys, final Map<KEY, CompletableFuture<Optional<RESULT>>> futures,
+                      final Function<Set<KEY>, Map<KEY, RESULT>> bulk, final ExecutionBudget budget) {
+            keys.forEach(key -> pending.put(key, futures.get(key)));
+            this.bulk = bulk;
+            this.budget = budget;
+        }
+
+        private void start() {
+            try {
+                next(Duration.ZERO);
+            } catch (final RuntimeException | Error e) {
+                completeExceptionally(e);
+            }
+        }
+
+        private void poll() {
+            try {
+                pending.values().removeIf(CompletableFuture::isDone);
+                if (pending.isEmpty()) {
+                    return;
+                }
+                executions++;
+                final long start = ticker.read();
+                final Map<KEY, RESULT> results;
+                try {
+                    results = bulk.apply(Collections.unmodifiableSet(new LinkedHashSet<>(pending.keySet())));
+                    history.record(start - budget.startTime(), ticker.read() - start, null);
+                } catch (final Exception e) {
+                    history.record(start - budget.startTime(), ticker.read() - start, e);
+                    if (!retryPolicy.ignorableException().test(e)) {
+                        completeExceptionally(new RetryException(e, history));
+                        return;
+                    }
+                    next(retryPolicy.delayAfter(e));
+                    return;
+                }
+                next(resolve(results == null ? Map.of() : results));
+            } catch (final RuntimeException | Error e) {
+                completeExceptionally(e);
+            }
+        }
+
+        /**
+         * Complete the keys whose result matches the stop condition.
+         *
+         * @return The longest delay before the next round suggested for any key still pending
+         */
+        private Duration resolve(final Map<KEY, RESULT> results) {
+            Duration delay = Duration.ZERO;
+            final Iterator<Map.Entry<KEY, CompletableFuture<Optional<RESULT>>>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<KEY, CompletableFuture<Optional<RESULT>>> entry = iterator.next();
+                final RESULT result = results.get(entry.getKey());
+                if (result != null) {
+                    lastResults.put(entry.getKey(), result);
+                    if (retryPolicy.stopCondition().test(result)) {
+                        entry.getValue().complete(Optional.of(result));
+                        iterator.remove();
+                        continue;
+                    }
+                }
+                final Duration suggested = retryPolicy.delayAfter(result);
+                if (suggested.compareTo(delay) > 0) {
+                    delay = suggested;
+                }
+            }
+            return delay;
+        }
+
+        private void next(final Duration delay) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            final long now = ticker.read();
+            final Optional<Duration> pause = budget.executionsExhausted(executions) || !budget.allows(now, delay)
+                    ? Optional.empty()
+                    : retryPolicy.pacer().tryReserve(budget.remaining(now));
+            if (pause.isEmpty()) {
+                pending.forEach((key, future) -> {
+                    if (retryPolicy.throwing()) {
+                        future.completeExceptionally(new RetriesExhaustedException(history));
+                    } else {
+                        future.complete(Optional.ofNullable(lastResults.get(key)));
+                    }
+                });
+                return;
+            }
+            final long wait = Math.max(ExecutionBudget.saturatedNanos(delay), ExecutionBudget.saturatedNanos(pause.get()));
+            scheduler.schedule(this::poll, wait, TimeUnit.NANOSECONDS);
+        }
+
+        private void completeExceptionally(final Throwable throwable) {
+            pending.values().forEach(future -> future.completeExceptionally(throwable));
+            pending.clear();
+        }
+    }
+}
@@ -16,31 +16,43 @@
 package io.github.gdiegel.retry.executor;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import io.github.gdiegel.retry.exception.AttemptHistory;
 import io.github.gdiegel.retry.exception.RetriesExhaustedException;
 import io.github.gdiegel.retry.exception.RetryException;
 import io.github.gdiegel.retry.policy.RetryPolicy;
 
-import java.time.LocalTime;
+import java.time.Duration;
 import java.util.Optional;
 import java.util.concurrent.Callable;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
 
-import static java.time.LocalTime.now;
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Default implementation of {@link RetryExecutor} of {@code RESULT}. Follows a {@link RetryPolicy} when executing the
- * computation.
+ * computation. Instances don't hold any state of a computation and may be shared between threads. The most recent
+ * executions of a computation are recorded in an {@link AttemptHistory}, which is attached to the {@link
+ * RetriesExhaustedException} or {@link RetryException} thrown when the computation doesn't succeed.
+ * <p>
+ * The wait before the next execution is the interval of the policy, unless the last result or ignorable exception
+ * suggests a delay (see {@link RetryPolicy#delayAfter(Object)}). There is no wait after the last execution. Every
+ * execution also waits for the {@link io.github.gdiegel.retry.ratelimit.Pacer} of the policy. A wait which would end
+ * after the timeout isn't started; the computation is exhausted instead. An interrupt during a wait aborts the
+ * computation with a {@link RetryException} caused by the {@link InterruptedException}, keeping the interrupt status.
+ * <p>
+ * Computations, executions and waits are reported to the JDK Flight Recorder as {@code io.github.gdiegel.retry.*}
+ * events, which cost next to nothing while no recording is running.
  *
  * @param <RESULT> the type of the result of the computation
  * @author Gabriel Diegel
  */
 public final class DefaultRetryExecutor<RESULT> implements RetryExecutor<RESULT> {
 
-    private static final String RETRIES_OR_EXECUTIONS_EXHAUSTED = "Retries or executions exhausted";
     private final RetryPolicy<RESULT> retryPolicy;
+    private final Ticker ticker;
+    private final Sleeper sleeper;
     private final LongAdder currentExecutions = new LongAdder();
-    private LocalTime startTime;
 
     /**
      * Construct an instance of {@link DefaultRetryExecutor} accepting a {@link RetryPolicy} of {@code RESULT}
@@ -48,77 +60,180 @@ public final class DefaultRetryExecutor<RESULT> implements RetryExecutor<RESULT>
      * @param retryPolicy The {@link RetryPolicy} to use for the computation
      */
     public DefaultRetryExecutor(final RetryPolicy<RESULT> retryPolicy) {
+        this(retryPolicy, Ticker.systemTicker(), Sleeper.system());
+    }
+
+    /**
+     * Construct an instance of {@link DefaultRetryExecutor} accepting a {@link RetryPolicy} of {@code RESULT} which
+     * measures time with the given {@link Ticker} and waits between executions using the given {@link Sleeper}. Useful
+     * for driving the computation on a virtual clock.
+     *
+     * @param retryPolicy The {@link RetryPolicy} to use for the computation
+     * @param ticker      The {@link Ticker} to measure elapsed time with
+     * @param sleeper     The {@link Sleeper} to wait between executions with
+     */
+    public DefaultRetryExecutor(final RetryPolicy<RESULT> retryPolicy, final Ticker ticker, final Sleeper sleeper) {
         this.retryPolicy = retryPolicy;
+        this.ticker = checkNotNull(ticker, "ticker");
+        this.sleeper = checkNotNull(sleeper, "sleeper");
     }
 
     /**
-     * @return The number of executions that have been performed so far during the computation
+     * @return The number of executions that have been performed so far by this executor, across all computations
      */
     @VisibleForTesting
     public long getCurrentExecutions() {
         return currentExecutions.sum();
     }
 
+    /**
+     * @return The {@link RetryPolicy} of {@code RESULT} this executor follows
+     */
+    public RetryPolicy<RESULT> retryPolicy() {
+        return retryPolicy;
+    }
+
     @Override
     public Optional<RESULT> execute(final Callable<RESULT> callable) {
         if (retryPolicy.maximumExecutions() == 0) {
             return Optional.empty();
         }
-        return doExecute(callable);
+        return doExecute(callable, new Execution(new ExecutionBudget(retryPolicy, ticker.read())));
     }
 
-    private Optional<RESULT> doExecute(final Callable<RESULT> callable) {
+    private Optional<RESULT> doExecute(final Callable<RESULT> callable, final Execution execution) {
+        final RetryExecutionEvent executionEvent = new RetryExecutionEvent();
+        executionEvent.begin();
         Optional<RESULT> result = Optional.empty();
-        setStartTime();
-        do {
-            try {
-                currentExecutions.increment();
-                result = Optional.ofNullable(callable.call());
-            } catch (final Exception e) {
-                if (!retryPolicy.ignorableException().test(e)) {
-                    throw new RetryException(e);
+        try {
+            do {
+                if (pace(execution)) {
+                    result = attempt(callable, execution, result);
+                    if (result.isPresent() && !skipped(callable) && retryPolicy.stopCondition().test(result.get())) {
+                        break;
+                    }
                 }
+            } while (!exhausted(execution) && await(execution, callable, result));
+            return result;
+        } finally {
+            executionEvent.complete(execution.executions, execution.exhausted);
+        }
+    }
+
+    private Optional<RESULT> attempt(final Callable<RESULT> callable, final Execution execution, final Optional<RESULT> previous) {
+        final RetryAttemptEvent attemptEvent = new RetryAttemptEvent();
+        attemptEvent.begin();
+        execution.executions++;
+        currentExecutions.increment();
+        final long start = ticker.read();
+        execution.failure = null;
+        try {
+            final Optional<RESULT> result = Optional.ofNullable(callable.call());
+            execution.history.record(start - execution.budget.startTime(), ticker.read() - start, null);
+            attemptEvent.complete(execution.executions, RetryAttemptEvent.SUCCEEDED, null);
+            return result;
+        } catch (final Exception e) {
+            execution.history.record(start - execution.budget.startTime(), ticker.read() - start, e);
+            if (!retryPolicy.ignorableException().test(e)) {
+                attemptEvent.complete(execution.executions, RetryAttemptEvent.FAILED, e);
+                throw new RetryException(e, execution.history);
             }
-            if (!retryPolicy.interval().isZero()) {
-                sleep();
-            }
-            if (result.isPresent() && retryPolicy.stopCondition().test(result.get())) {
-                break;
-            }
-        } while (!exhausted());
-        return result;
+            execution.failure = e;
+            attemptEvent.complete(execution.executions, RetryAttemptEvent.IGNORED, e);
+            return previous;
+        }
+    }
+
+    private static boolean skipped(final Callable<?> callable) {
+        return callable instanceof TwoPhaseCallable<?, ?> twoPhaseCallable && twoPhaseCallable.skipped();
     }
 
-    private boolean exhausted() {
-        final boolean exhausted = timeExhausted() || executionsExhausted();
-        if (exhausted && retryPolicy.throwing()) {
-            throw new RetriesExhaustedException(RETRIES_OR_EXECUTIONS_EXHAUSTED);
+    private boolean exhausted(final Execution execution) {
+        execution.exhausted = timeExhausted(execution) || executionsExhausted(execution);
+        if (execution.exhausted && retryPolicy.throwing()) {
+            throw new RetriesExhaustedException(execution.history);
         }
-        return exhausted;
+        return execution.exhausted;
+    }
+
+    private boolean timeExhausted(final Execution execution) {
+        return execution.outOfTime || execution.budget.timeExhausted(ticker.read());
     }
 
-    private boolean timeExhausted() {
-        return now().isAfter(startTime.plus(retryPolicy.timeout()));
+    /**
+     * Wait before the next execution for the delay suggested by the last execution, or the interval. An execution which
+     * skipped the computation didn't produce a result to suggest a delay.
+     *
+     * @return Whether the next execution may proceed, {@code false} if the wait would end after the timeout
+     */
+    private boolean await(final Execution execution, final Callable<RESULT> callable, final Optional<RESULT> result) {
+        final Duration delay;
+        if (execution.failure != null) {
+            delay = retryPolicy.delayAfter(execution.failure);
+        } else if (skipped(callable)) {
+            delay = retryPolicy.interval();
+        } else {
+            delay = retryPolicy.delayAfter(result.orElse(null));
+        }
+        if (delay.isZero()) {
+            return true;
+        }
+        if (!execution.budget.allows(ticker.read(), delay)) {
+            execution.outOfTime = true;
+            return !exhausted(execution);
+        }
+        sleep(delay, execution);
+        return true;
     }
 
-    private boolean executionsExhausted() {
-        if (retryPolicy.maximumExecutions() <= 0) {
+    private boolean executionsExhausted(final Execution execution) {
+        return execution.budget.executionsExhausted(execution.executions);
+    }
+
+    /**
+     * Wait for the pacer before an execution, unless the wait would end after the timeout.
+     *
+     * @return Whether the execution may proceed
+     */
+    private boolean pace(final Execution execution) {
+        final Optional<Duration> pause = retryPolicy.pacer().tryReserve(execution.budget.remaining(ticker.read()));
+        if (pause.isEmpty()) {
+            execution.outOfTime = true;
             return false;
         }
-        return currentExecutions.sum() == retryPolicy.maximumExecutions();
+        if (!pause.get().isZero()) {
+            sleep(pause.get(), execution);
+        }
+        return true;
     }
 
-    private void sleep() {
+    private void sleep(final Duration duration, final Execution execution) {
+        final RetryWaitEvent waitEvent = new RetryWaitEvent();
+        waitEvent.begin();
         try {
-            TimeUnit.NANOSECONDS.sleep(retryPolicy.interval().toNanos());
+            sleeper.sleep(duration);
         } catch (final InterruptedException e) {
             Thread.currentThread().interrupt();
+            throw new RetryException(e, execution.history);
+        } finally {
+            waitEvent.complete(ExecutionBudget.saturatedNanos(duration));
         }
     }
 
-    private void setStartTime() {
-        if (startTime == null) {
-            startTime = now();
+    /**
+     * The state of a single computation.
+     */
+    private static final class Execution {
+
+        private final ExecutionBudget budget;
+        private final AttemptHistory history = new AttemptHistory();
+        private long executions;
+        private Exception failure;
+        private boolean outOfTime;
+        private boolean exhausted;
+
+        private Execution(final ExecutionBudget budget) {
+            this.budget = budget;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,82 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.executor;
+
+import com.google.common.math.LongMath;
+import io.github.gdiegel.retry.policy.RetryPolicy;
+
+import java.time.Duration;
+
+/**
+ * The executions and the time a single computation may spend according to its {@link RetryPolicy}. Shared by all
+ * executors so they agree on when a computation is exhausted. Times are nanoseconds read from the same source as the
+ * start time, e.g. a {@link com.google.common.base.Ticker} or {@link System#nanoTime()}.
+ *
+ * @author Gabriel Diegel
+ */
+final class ExecutionBudget {
+
+    private final RetryPolicy<?> retryPolicy;
+    private final long startTime;
+    private final long timeout;
+
+    ExecutionBudget(final RetryPolicy<?> retryPolicy, final long startTime) {
+        this.retryPolicy = retryPolicy;
+        this.startTime = startTime;
+        this.timeout = saturatedNanos(retryPolicy.timeout());
+    }
+
+    long startTime() {
+        return startTime;
+    }
+
+    /**
+     * @return The time at which the computation times out, saturated instead of overflowing
+     */
+    long deadline() {
+        return LongMath.saturatedAdd(startTime, timeout);
+    }
+
+    boolean executionsExhausted(final long executions) {
+        return retryPolicy.maximumExecutions() > 0 && executions >= retryPolicy.maximumExecutions();
+    }
+
+    boolean timeExhausted(final long now) {
+        return now - startTime > timeout;
+    }
+
+    /**
+     * @return Whether a wait of the given {@link Duration} starting now ends before the computation times out
+     */
+    boolean allows(final long now, final Duration wait) {
+        return saturatedNanos(wait) <= timeout - (now - startTime);
+    }
+
+    /**
+     * @return The {@link Duration} left until the computation times out
+     */
+    Duration remaining(final long now) {
+        return Duration.ofNanos(Math.max(0, timeout - (now - startTime)));
+    }
+
+    static long saturatedNanos(final Duration duration) {
+        try {
+            return duration.toNanos();
+        } catch (final ArithmeticException e) {
+            return duration.isNegative() ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.executor;
+
+import com.google.common.base.Ticker;
+import io.github.gdiegel.retry.policy.RetryPolicy;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A {@link FailoverRetryExecutor} of {@code RESULT} executes the computation against one of several alternative
+ * {@link Callable}s of {@code RESULT}, e.g. the same operation offered by different replicas. It tracks the success rate
+ * and the exponentially weighted moving average of the latency of the successful executions of every alternative and
+ * ranks them by their expected time to success, the latency divided by the success rate. Failures only count towards
+ * the success rate, so an alternative failing fast, e.g. refusing connections, doesn't rank better for it. An
+ * alternative which hasn't succeeded yet is assumed to be as slow as the slowest one which has. Every execution goes to
+ * the best ranked alternative, an execution failing with an ignorable exception is retried on the next best alternative
+ * not yet tried during the computation. Alternatives without any recorded executions rank first, so every alternative
+ * gets sampled, and so do alternatives which haven't been executed for a second, so one which failed and has since
+ * recovered regains its traffic. Otherwise follows the {@link RetryPolicy} like {@link DefaultRetryExecutor}.
+ *
+ * @param <RESULT> the type of the result of the computation
+ * @author Gabriel Diegel
+ */
+public final class FailoverRetryExecutor<RESULT> {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double MINIMUM_SUCCESS_RATE = 0.01;
+    private static final long PROBE_INTERVAL = Duration.ofSeconds(1).toNanos();
+
+    private final List<Callable<RESULT>> alternatives;
+    private final Health[] health;
+    private final DefaultRetryExecutor<RESULT> retryExecutor;
+    private final Ticker ticker;
+
+    /**
+     * Construct an instance of {@link FailoverRetryExecutor} accepting a {@link RetryPolicy} of {@code RESULT} and the
+     * alternatives to execute, in order of preference.
+     *
+     * @param retryPolicy  The {@link RetryPolicy} to use for the computation
+     * @param alternatives The alternative {@link Callable}s of {@code RESULT}, in order of preference
+     */
+    public FailoverRetryExecutor(final RetryPolicy<RESULT> retryPolicy, final List<? extends Callable<RESULT>> alternatives) {
+        this(retryPolicy, alternatives, Ticker.systemTicker(), Sleeper.system());
+    }
+
+    /**
+     * Construct an instance of {@link FailoverRetryExecutor} accepting a {@link RetryPolicy} of {@code RESULT} and the
+     * alternatives to execute, in order of preference, which measures time with the given {@link Ticker} and waits
+     * between executions using the given {@link Sleeper}.
+     *
+     * @param retryPolicy  The {@link RetryPolicy} to use for the computation
+     * @param alternatives The alternative {@link Callable}s of {@code RESULT}, in order of preference
+     * @param ticker       The {@link Ticker} to measure elapsed time and latencies with
+     * @param sleeper      The {@link Sleeper} to wait between executions with
+     */
+    public FailoverRetryExecutor(final RetryPolicy<RESULT> retryPolicy, final List<? extends Callable<RESULT>> alternatives,
+                                 final Ticker ticker, final Sleeper sleeper) {
+        checkNotNull(retryPolicy, "retryPolicy");
+        checkNotNull(alternatives, "alternatives");
+        checkArgument(!alternatives.isEmpty(), "No alternatives");
+        this.alternatives = List.copyOf(alternatives);
+        this.health = new Health[this.alternatives.size()];
+        for (int index = 0; index < health.length; index++) {
+            health[index] = new Health();
+        }
+        this.retryExecutor = new DefaultRetryExecutor<>(retryPolicy, ticker, sleeper);
+        this.ticker = ticker;
+    }
+
+    /**
+     * Execute the computation by calling the alternatives in order of their current ranking.
+     *
+     * @return An {@link Optional} of {@code RESULT} holding the result of the computation
+     */
+    public Optional<RESULT> execute() {
+        return retryExecutor.execute(new Failover());
+    }
+
+    /**
+     * @param index the index of the alternative
+     * @return The smoothed fraction of executions of the alternative which didn't throw
+     */
+    public double successRate(final int index) {
+        checkElementIndex(index, health.length);
+        return health[index].successRate;
+    }
+
+    /**
+     * @param index the index of the alternative
+     * @return The exponentially weighted moving average of the latency of the successful executions of the alternative,
+     * {@link Duration#ZERO} if it hasn't succeeded yet
+     */
+    public Duration latency(final int index) {
+        checkElementIndex(index, health.length);
+        return Duration.ofNanos((long) health[index].latency);
+    }
+
+    private int best(final boolean[] excluded) {
+        double slowest = 0;
+        for (final Health alternative : health) {
+            if (alternative.succeeded) {
+                slowest = Math.max(slowest, alternative.latency);
+            }
+        }
+        final long now = ticker.read();
+        int best = -1;
+        double bestScore = Double.MAX_VALUE;
+        for (int index = 0; index < health.length; index++) {
+            final double score = health[index].score(slowest, now);
+            if (!excluded[index] && score < bestScore) {
+                best = index;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The {@link Callable} handed to the {@link DefaultRetryExecutor} for a single computation, remembering which
+     * alternatives have already failed during it.
+     */
+    private final class Failover implements Callable<RESULT> {
+
+        private final boolean[] failed = new boolean[alternatives.size()];
+        private int failures;
+
+        @Override
+        public RESULT call() throws Exception {
+            if (failures == failed.length) {
+                Arrays.fill(failed, false);
+                failures = 0;
+            }
+            final int index = best(failed);
+            final long start = ticker.read();
+            try {
+                final RESULT result = alternatives.get(index).call();
+                final long end = ticker.read();
+                health[index].record(start, end, true);
+                Arrays.fill(failed, false);
+                failures = 0;
+                return result;
+            } catch (final Exception e) {
+                health[index].record(start, ticker.read(), false);
+                failed[index] = true;
+                failures++;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * The health of a single alternative, shared between all computations.
+     */
+    private static final class Health {
+
+        private volatile double latency;
+        private volatile double successRate = 1.0;
+        private volatile boolean sampled;
+        private volatile boolean succeeded;
+        private volatile long lastExecuted;
+
+        private synchronized void record(final long start, final long end, final boolean success) {
+            final long nanos = end - start;
+            if (success) {
+                latency = succeeded ? SMOOTHING * nanos + (1 - SMOOTHING) * latency : nanos;
+                succeeded = true;
+            }
+            successRate = SMOOTHING * (success ? 1.0 : 0.0) + (1 - SMOOTHING) * successRate;
+            sampled = true;
+            lastExecuted = end;
+        }
+
+        /**
+         * @param slowest the latency of the slowest alternative which has succeeded, assumed for this one if it hasn't
+         * @param now     the current time in nanoseconds
+         * @return The expected time to success, lower is better
+         */
+        private double score(final double slowest, final long now) {
+            if (!sampled || now - lastExecuted >= PROBE_INTERVAL) {
+                return 0;
+            }
+            // at least a nanosecond, so alternatives are still ranked by success rate when no latency is known
+            final double expected = Math.max(succeeded ? latency : slowest, 1);
+            return expected / Math.max(successRate, MINIMUM_SUCCESS_RATE);
+        }
+    }
+}
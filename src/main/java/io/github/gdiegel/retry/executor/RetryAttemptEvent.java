@@ -0,0 +1,60 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.executor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event emitted for every execution of the computation.
+ *
+ * @author Gabriel Diegel
+ */
+@Name("io.github.gdiegel.retry.Attempt")
+@Label("Retry Attempt")
+@Category("retryJ")
+@Description("A single execution of a computation")
+final class RetryAttemptEvent extends jdk.jfr.Event {
+
+    static final String SUCCEEDED = "SUCCEEDED";
+    static final String IGNORED = "IGNORED";
+    static final String FAILED = "FAILED";
+
+    @Label("Attempt")
+    @Description("The number of the execution within the computation, starting at 1")
+    long attempt;
+
+    @Label("Outcome")
+    @Description("SUCCEEDED if a result was returned, IGNORED if an ignorable exception was thrown, FAILED otherwise")
+    String outcome;
+
+    @Label("Exception Class")
+    Class<?> exceptionClass;
+
+    void complete(final long attempt, final String outcome, final Exception exception) {
+        if (isEnabled()) {
+            end();
+            if (shouldCommit()) {
+                this.attempt = attempt;
+                this.outcome = outcome;
+                this.exceptionClass = exception == null ? null : exception.getClass();
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.executor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event emitted for every computation, spanning all of its executions and waits.
+ *
+ * @author Gabriel Diegel
+ */
+@Name("io.github.gdiegel.retry.Execution")
+@Label("Retry Execution")
+@Category("retryJ")
+@Description("A computation executed according to a retry policy")
+final class RetryExecutionEvent extends jdk.jfr.Event {
+
+    @Label("Attempts")
+    @Description("The number of executions performed")
+    long attempts;
+
+    @Label("Exhausted")
+    @Description("Whether the timeout or the maximum number of executions was reached")
+    boolean exhausted;
+
+    void complete(final long attempts, final boolean exhausted) {
+        if (isEnabled()) {
+            end();
+            if (shouldCommit()) {
+                this.attempts = attempts;
+                this.exhausted = exhausted;
+                commit();
+            }
+        }
+    }
+}
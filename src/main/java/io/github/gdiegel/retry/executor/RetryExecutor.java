@@ -17,6 +17,7 @@ package io.github.gdiegel.retry.executor;
 
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.function.Predicate;
 
 /**
  * A {@link RetryExecutor} of {@code RESULT} executes the {@link Callable} passed to it and returns an {@link Optional}
@@ -34,4 +35,32 @@ public interface RetryExecutor<RESULT> {
      * @return An {@link Optional} of {@code RESULT} holding the result of the computation
      */
     Optional<RESULT> execute(Callable<RESULT> callable);
+
+    /**
+     * Execute the computation in two phases: the cheap probe is called on every execution and the expensive {@link
+     * Callable} and the stop condition only run when the probe value is ready.
+     *
+     * @param probe    The cheap callable to execute on every execution, e.g. a HEAD request or a row count
+     * @param ready    A {@link Predicate} of {@code PROBE} deciding whether the expensive callable should run
+     * @param callable The expensive callable to execute
+     * @param <PROBE>  the type of the probe value
+     * @return An {@link Optional} of {@code RESULT} holding the result of the computation
+     */
+    default <PROBE> Optional<RESULT> execute(final Callable<PROBE> probe, final Predicate<? super PROBE> ready, final Callable<RESULT> callable) {
+        return execute(TwoPhaseCallable.whenReady(probe, ready, callable));
+    }
+
+    /**
+     * Execute the computation in two phases: the cheap probe is called on every execution and the expensive {@link
+     * Callable} and the stop condition only run on the first execution and whenever the probe value differs from the
+     * one seen at the last successful run of the expensive callable, e.g. when a version or ETag changes.
+     *
+     * @param probe    The cheap callable to execute on every execution
+     * @param callable The expensive callable to execute
+     * @param <PROBE>  the type of the probe value
+     * @return An {@link Optional} of {@code RESULT} holding the result of the computation
+     */
+    default <PROBE> Optional<RESULT> executeOnChange(final Callable<PROBE> probe, final Callable<RESULT> callable) {
+        return execute(TwoPhaseCallable.onChange(probe, callable));
+    }
 }
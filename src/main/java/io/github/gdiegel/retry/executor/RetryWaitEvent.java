@@ -0,0 +1,50 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.executor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event emitted for every wait between or before executions of the computation. The duration of
+ * the event is the time actually waited.
+ *
+ * @author Gabriel Diegel
+ */
+@Name("io.github.gdiegel.retry.Wait")
+@Label("Retry Wait")
+@Category("retryJ")
+@Description("A wait between or before executions of a computation")
+final class RetryWaitEvent extends jdk.jfr.Event {
+
+    @Label("Requested")
+    @Description("The time the executor asked to wait for")
+    @Timespan(Timespan.NANOSECONDS)
+    long requested;
+
+    void complete(final long requested) {
+        if (isEnabled()) {
+            end();
+            if (shouldCommit()) {
+                this.requested = requested;
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.executor;
+
+import com.google.common.math.LongMath;
+import io.github.gdiegel.retry.exception.AttemptHistory;
+import io.github.gdiegel.retry.exception.RetriesExhaustedException;
+import io.github.gdiegel.retry.exception.RetryException;
+import io.github.gdiegel.retry.policy.RetryPolicy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+/**
+ * A {@link RetryingExecutorService} decorates an {@link ExecutorService} and retries every task submitted to it
+ * according to a {@link RetryPolicy}. Each run of a task on the decorated {@link ExecutorService} is a single
+ * execution. A task failing with an ignorable exception is put on a delay queue ordered by the time its next execution
+ * is due. Every execution, including the first, is also delayed until the
+ * {@link io.github.gdiegel.retry.ratelimit.Pacer} of the policy lets it proceed. Workers are therefore never blocked
+ * while waiting between executions. Due executions are held in a queue ordered by the deadline of their task and only
+ * handed to the decorated {@link ExecutorService} while fewer than its parallelism are in flight, so when workers are
+ * scarce the task closest to its timeout runs first.
+ * <p>
+ * A task submitted as a {@link Callable} completes once its result meets the stop condition of the policy, like with
+ * {@link DefaultRetryExecutor} a {@code null} result never does. Otherwise it is retried after the delay suggested for
+ * the result. A task submitted as a {@link Runnable} has no result to test and completes as soon as an execution
+ * returns normally. When a task is exhausted, its future completes exceptionally with a
+ * {@link RetriesExhaustedException} if the policy is throwing and with the last result, if any, otherwise. A
+ * non-ignorable exception completes it exceptionally with a {@link RetryException}. After {@link #shutdown()}, tasks
+ * already submitted are still retried, the decorated {@link ExecutorService} is shut down once all of them have
+ * completed. {@link #shutdownNow()} cancels all tasks which haven't completed yet.
+ *
+ * @author Gabriel Diegel
+ */
+public final class RetryingExecutorService extends AbstractExecutorService {
+
+    private static final String PARALLELISM_FORMAT = "Parallelism: [%s]";
+
+    private final ExecutorService delegate;
+    private final RetryPolicy<Object> retryPolicy;
+    private final DelayQueue<RetryingTask<?>> delayQueue = new DelayQueue<>();
+    private final PriorityBlockingQueue<RetryingTask<?>> dueTasks = new PriorityBlockingQueue<>(11,
+            (first, second) -> Long.compare(first.budget.deadline(), second.budget.deadline()));
+    private final Semaphore inFlight;
+    private final Set<RetryingTask<?>> activeTasks = ConcurrentHashMap.newKeySet();
+    private final Thread dispatcher;
+    private volatile boolean shutdown;
+
+    /**
+     * Construct an instance of {@link RetryingExecutorService} decorating the given {@link ExecutorService}. Its
+     * parallelism is the maximum pool size of a {@link ThreadPoolExecutor}, the number of available processors
+     * otherwise.
+     *
+     * @param delegate    The {@link ExecutorService} to run executions on
+     * @param retryPolicy The {@link RetryPolicy} to retry every task with, testing the results of all tasks
+     */
+    public RetryingExecutorService(final ExecutorService delegate, final RetryPolicy<Object> retryPolicy) {
+        this(delegate, retryPolicy, delegate instanceof ThreadPoolExecutor threadPoolExecutor
+                ? threadPoolExecutor.getMaximumPoolSize() : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construct an instance of {@link RetryingExecutorService} decorating the given {@link ExecutorService}, handing it
+     * at most the given number of executions at a time.
+     *
+     * @param delegate    The {@link ExecutorService} to run executions on
+     * @param retryPolicy The {@link RetryPolicy} to retry every task with, testing the results of all tasks
+     * @param parallelism The number of executions the decorated {@link ExecutorService} runs at a time
+     */
+    public RetryingExecutorService(final ExecutorService delegate, final RetryPolicy<Object> retryPolicy, final int parallelism) {
+        checkArgument(parallelism > 0, format(PARALLELISM_FORMAT, parallelism));
+        this.delegate = checkNotNull(delegate, "delegate");
+        this.retryPolicy = checkNotNull(retryPolicy, "retryPolicy");
+        this.inFlight = new Semaphore(parallelism);
+        this.dispatcher = new Thread(this::dispatch, "retrying-executor-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        checkNotNull(command, "command");
+        final RetryingTask<?> task = command instanceof RetryingTask<?> retryingTask ? retryingTask : new RetryingTask<>(Executors.callable(command), false);
+        if (shutdown) {
+            throw new RejectedExecutionException("Shut down");
+        }
+        activeTasks.add(task);
+        task.whenComplete((result, throwable) -> completed(task));
+        task.schedule(Duration.ZERO);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(final Callable<T> callable) {
+        return new RetryingTask<>(callable, true);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(final Runnable runnable, final T value) {
+        return new RetryingTask<>(Executors.callable(runnable, value), false);
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        if (activeTasks.isEmpty()) {
+            terminate();
+        }
+    }
+
+    /**
+     * Cancel all tasks which haven't completed yet and shut down the decorated {@link ExecutorService}.
+     *
+     * @return The tasks which were waiting for their next execution, not including those executing at the time
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        dispatcher.interrupt();
+        // cancel before interrupting the workers, so an interrupted execution can't complete its task first
+        final List<Runnable> pending = new ArrayList<>();
+        for (final RetryingTask<?> task : activeTasks) {
+            final boolean executing = task.executing;
+            if (task.cancel(false) && !executing) {
+                pending.add(task);
+            }
+        }
+        delayQueue.clear();
+        dueTasks.clear();
+        // the executions queued in the decorated executor are the tasks cancelled above
+        delegate.shutdownNow();
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && activeTasks.isEmpty() && delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (activeTasks) {
+            while (!activeTasks.isEmpty()) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(activeTasks, remaining);
+            }
+        }
+        return delegate.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    private void completed(final RetryingTask<?> task) {
+        activeTasks.remove(task);
+        if (activeTasks.isEmpty()) {
+            synchronized (activeTasks) {
+                activeTasks.notifyAll();
+            }
+            if (shutdown) {
+                terminate();
+            }
+        }
+    }
+
+    private void terminate() {
+        dispatcher.interrupt();
+        delegate.shutdown();
+    }
+
+    private void dispatch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                due(delayQueue.take());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void due(final RetryingTask<?> task) {
+        dueTasks.add(task);
+        submitDueExecutions();
+    }
+
+    /**
+     * Hand due executions to the decorated {@link ExecutorService}, earliest deadline first, while it has capacity.
+     * Called whenever an execution becomes due or one in flight ends, so no due execution is left behind.
+     */
+    private void submitDueExecutions() {
+        while (!dueTasks.isEmpty() && inFlight.tryAcquire()) {
+            final RetryingTask<?> task = dueTasks.poll();
+            if (task == null) {
+                inFlight.release();
+                continue;
+            }
+            try {
+                delegate.execute(task);
+            } catch (final RejectedExecutionException e) {
+                inFlight.release();
+                task.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * A task and the state of its computation. Its future completes once the computation does, running it performs a
+     * single execution.
+     */
+    private final class RetryingTask<T> extends CompletableFuture<T> implements RunnableFuture<T>, Delayed {
+
+        private final Callable<T> callable;
+        private final boolean tested;
+        private final ExecutionBudget budget = new ExecutionBudget(retryPolicy, System.nanoTime());
+        private final AttemptHistory history = new AttemptHistory();
+        private long executions;
+        private T lastResult;
+        private volatile long nextDue;
+        private volatile boolean executing;
+
+        /**
+         * @param tested whether results are tested against the stop condition, {@code false} for {@link Runnable}s
+         */
+        private RetryingTask(final Callable<T> callable, final boolean tested) {
+            this.callable = checkNotNull(callable, "callable");
+            this.tested = tested;
+        }
+
+        @Override
+        public void run() {
+            try {
+                attempt();
+            } finally {
+                inFlight.release();
+                submitDueExecutions();
+            }
+        }
+
+        private void attempt() {
+            if (isDone()) {
+                return;
+            }
+            executing = true;
+            executions++;
+            final long start = System.nanoTime();
+            try {
+                final T result = callable.call();
+                history.record(start - budget.startTime(), System.nanoTime() - start, null);
+                if (!tested || result != null && retryPolicy.stopCondition().test(result)) {
+                    complete(result);
+                } else {
+                    lastResult = result;
+                    retry(retryPolicy.delayAfter(result));
+                }
+            } catch (final Exception e) {
+                history.record(start - budget.startTime(), System.nanoTime() - start, e);
+                if (!retryPolicy.ignorableException().test(e)) {
+                    completeExceptionally(new RetryException(e, history));
+                } else {
+                    retry(retryPolicy.delayAfter(e));
+                }
+            } catch (final Error e) {
+                completeExceptionally(e);
+                throw e;
+            } finally {
+                executing = false;
+            }
+        }
+
+        private void retry(final Duration delay) {
+            if (budget.executionsExhausted(executions)) {
+                exhausted();
+            } else {
+                schedule(delay);
+            }
+        }
+
+        /**
+         * Schedule the next execution after the given delay and the wait for the pacer, whichever ends last.
+         */
+        private void schedule(final Duration delay) {
+            final long now = System.nanoTime();
+            final Optional<Duration> pause = budget.allows(now, delay) ? retryPolicy.pacer().tryReserve(budget.remaining(now)) : Optional.empty();
+            if (pause.isEmpty()) {
+                exhausted();
+                return;
+            }
+            final long wait = Math.max(ExecutionBudget.saturatedNanos(delay), ExecutionBudget.saturatedNanos(pause.get()));
+            if (wait == 0) {
+                due(this);
+                return;
+            }
+            nextDue = LongMath.saturatedAdd(now, wait);
+            delayQueue.put(this);
+            if (isDone()) {
+                // cancelled concurrently, e.g. by shutdownNow()
+                delayQueue.remove(this);
+            }
+        }
+
+        private void exhausted() {
+            if (retryPolicy.throwing()) {
+                completeExceptionally(new RetriesExhaustedException(history));
+            } else {
+                complete(lastResult);
+            }
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            delayQueue.remove(this);
+            dueTasks.remove(this);
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(LongMath.saturatedSubtract(nextDue, System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(final Delayed other) {
+            final RetryingTask<?> task = (RetryingTask<?>) other;
+            final int byDue = Long.compare(nextDue, task.nextDue);
+            return byDue != 0 ? byDue : Long.compare(budget.deadline(), task.budget.deadline());
+        }
+    }
+}
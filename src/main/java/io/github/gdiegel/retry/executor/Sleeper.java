@@ -0,0 +1,45 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.executor;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Sleeper} waits for a given {@link Duration} between executions of the computation.
+ *
+ * @author Gabriel Diegel
+ */
+@FunctionalInterface
+public interface Sleeper {
+
+    /**
+     * Wait for the given {@link Duration}.
+     *
+     * @param duration The {@link Duration} to wait for
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     */
+    void sleep(Duration duration) throws InterruptedException;
+
+    /**
+     * Return a {@link Sleeper} which blocks the current thread using {@link TimeUnit#sleep(long)}.
+     *
+     * @return A {@link Sleeper} backed by the system clock
+     */
+    static Sleeper system() {
+        return duration -> TimeUnit.NANOSECONDS.sleep(duration.toNanos());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.executor;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A {@link TwoPhaseCallable} of {@code PROBE} and {@code RESULT} runs a cheap probe on every execution and only runs
+ * the expensive computation once the probe signals that it is worth it, either because the probe value is ready or
+ * because it changed since the last successful computation. When the computation is skipped, the last computed result
+ * is returned again and {@link #skipped()} returns {@code true}.
+ *
+ * @param <PROBE>  the type of the probe value
+ * @param <RESULT> the type of the result of the computation
+ * @author Gabriel Diegel
+ */
+final class TwoPhaseCallable<PROBE, RESULT> implements Callable<RESULT> {
+
+    private final Callable<PROBE> probe;
+    private final Predicate<? super PROBE> ready;
+    private final Callable<RESULT> callable;
+    private boolean fetched;
+    private PROBE lastProbe;
+    private RESULT lastResult;
+    private boolean skipped;
+
+    private TwoPhaseCallable(final Callable<PROBE> probe, final Predicate<? super PROBE> ready, final Callable<RESULT> callable) {
+        this.probe = checkNotNull(probe, "probe");
+        this.ready = ready;
+        this.callable = checkNotNull(callable, "callable");
+    }
+
+    static <PROBE, RESULT> TwoPhaseCallable<PROBE, RESULT> whenReady(final Callable<PROBE> probe, final Predicate<? super PROBE> ready,
+                                                                     final Callable<RESULT> callable) {
+        return new TwoPhaseCallable<>(probe, checkNotNull(ready, "ready"), callable);
+    }
+
+    static <PROBE, RESULT> TwoPhaseCallable<PROBE, RESULT> onChange(final Callable<PROBE> probe, final Callable<RESULT> callable) {
+        return new TwoPhaseCallable<>(probe, null, callable);
+    }
+
+    @Override
+    public RESULT call() throws Exception {
+        skipped = true;
+        final PROBE value = probe.call();
+        if (!isReady(value)) {
+            return lastResult;
+        }
+        final RESULT result = callable.call();
+        skipped = false;
+        fetched = true;
+        lastProbe = value;
+        lastResult = result;
+        return result;
+    }
+
+    /**
+     * @return Whether the last execution skipped the computation
+     */
+    boolean skipped() {
+        return skipped;
+    }
+
+    private boolean isReady(final PROBE value) {
+        if (ready != null) {
+            return ready.test(value);
+        }
+        return !fetched || !Objects.equals(lastProbe, value);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.journal;
+
+import com.google.common.base.Ticker;
+import io.github.gdiegel.retry.exception.RetriesExhaustedException;
+import io.github.gdiegel.retry.exception.RetryException;
+import io.github.gdiegel.retry.executor.DefaultRetryExecutor;
+import io.github.gdiegel.retry.executor.Sleeper;
+import io.github.gdiegel.retry.policy.RetryPolicy;
+import io.github.gdiegel.retry.policy.RetryPolicyBuilder;
+
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+/**
+ * A {@link JournaledRetryExecutor} of {@code RESULT} executes long-running computations identified by a key and records
+ * their progress in a {@link RetryJournal}, so a computation interrupted by a restart resumes where it left off: with
+ * the executions already performed counting towards the maximum executions, the original deadline and the next
+ * execution at the time it was due, including delays suggested by the last result or exception. Only the progress is
+ * persisted, not the last result. Otherwise follows the {@link RetryPolicy} like {@link DefaultRetryExecutor}. A
+ * failure to update the journal, e.g. because it was closed during shutdown, is logged and never replaces the outcome
+ * of the computation; the computation is then resumed from its last recorded state on restart. Likewise, a computation
+ * whose thread is interrupted, e.g. during shutdown, is aborted with a {@link RetryException} caused by the
+ * {@link InterruptedException} and remains in the journal, only computations which ended are removed from it.
+ *
+ * @param <RESULT> the type of the result of the computation
+ * @author Gabriel Diegel
+ */
+public final class JournaledRetryExecutor<RESULT> {
+
+    private static final System.Logger LOGGER = System.getLogger(JournaledRetryExecutor.class.getName());
+    private static final Instant LATEST_DEADLINE = Instant.ofEpochMilli(Long.MAX_VALUE);
+
+    private final RetryPolicy<RESULT> retryPolicy;
+    private final RetryJournal journal;
+    private final Clock clock;
+    private final Sleeper sleeper;
+
+    /**
+     * Construct an instance of {@link JournaledRetryExecutor} accepting a {@link RetryPolicy} of {@code RESULT} and the
+     * {@link RetryJournal} to record progress in.
+     *
+     * @param retryPolicy The {@link RetryPolicy} to use for the computation
+     * @param journal     The {@link RetryJournal} to record progress in
+     */
+    public JournaledRetryExecutor(final RetryPolicy<RESULT> retryPolicy, final RetryJournal journal) {
+        this(retryPolicy, journal, Clock.systemUTC(), Sleeper.system());
+    }
+
+    /**
+     * Construct an instance of {@link JournaledRetryExecutor} accepting a {@link RetryPolicy} of {@code RESULT} and the
+     * {@link RetryJournal} to record progress in, which reads wall-clock time from the given {@link Clock} and waits
+     * using the given {@link Sleeper}.
+     *
+     * @param retryPolicy The {@link RetryPolicy} to use for the computation
+     * @param journal     The {@link RetryJournal} to record progress in
+     * @param clock       The {@link Clock} to compute deadlines and due times with
+     * @param sleeper     The {@link Sleeper} to wait with
+     */
+    public JournaledRetryExecutor(final RetryPolicy<RESULT> retryPolicy, final RetryJournal journal, final Clock clock, final Sleeper sleeper) {
+        this.retryPolicy = checkNotNull(retryPolicy, "retryPolicy");
+        this.journal = checkNotNull(journal, "journal");
+        this.clock = checkNotNull(clock, "clock");
+        this.sleeper = checkNotNull(sleeper, "sleeper");
+    }
+
+    /**
+     * Execute the computation identified by the given key, resuming it if the journal holds its state.
+     *
+     * @param key      the key identifying the computation, stable across restarts
+     * @param callable the callable to execute
+     * @return An {@link Optional} of {@code RESULT} holding the result of the computation
+     * @throws RetryException caused by an {@link InterruptedException} if the thread was interrupted, keeping the
+     *                        computation in the journal
+     */
+    public Optional<RESULT> execute(final String key, final Callable<RESULT> callable) {
+        checkNotNull(key, "key");
+        checkNotNull(callable, "callable");
+        final Instant now = clock.instant();
+        final RetryState state = journal.state(key).orElseGet(() -> new RetryState(key, 0, deadline(now), now));
+        boolean ended = true;
+        try {
+            final RetryPolicy<RESULT> remaining = remaining(state);
+            if (remaining == null) {
+                if (retryPolicy.throwing()) {
+                    throw new RetriesExhaustedException();
+                }
+                return Optional.empty();
+            }
+            waitUntil(state.nextDue());
+            final Journaling journaling = new Journaling(state, callable);
+            return new DefaultRetryExecutor<>(remaining, Ticker.systemTicker(), sleeper).execute(journaling);
+        } catch (final RetryException e) {
+            if (e.getCause() instanceof InterruptedException) {
+                ended = false;
+                Thread.currentThread().interrupt();
+            }
+            throw e;
+        } finally {
+            if (ended) {
+                update(key, () -> journal.complete(key));
+            }
+        }
+    }
+
+    private void update(final String key, final Runnable update) {
+        try {
+            update.run();
+        } catch (final IllegalStateException | UncheckedIOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, format("Failed to journal progress of [%s]", key), e);
+        }
+    }
+
+    /**
+     * @return The policy for the rest of the computation, {@code null} if it is already exhausted
+     */
+    private RetryPolicy<RESULT> remaining(final RetryState state) {
+        final RetryPolicyBuilder<RESULT> builder = RetryPolicyBuilder.from(retryPolicy);
+        if (retryPolicy.maximumExecutions() > 0) {
+            final long executions = retryPolicy.maximumExecutions() - state.executions();
+            if (executions <= 0) {
+                return null;
+            }
+            builder.withMaximumExecutions(executions);
+        }
+        final Duration timeout = Duration.between(clock.instant(), state.deadline());
+        if (timeout.isNegative()) {
+            return null;
+        }
+        return builder.withTimeout(timeout).build();
+    }
+
+    private Instant deadline(final Instant now) {
+        return saturatedPlus(now, retryPolicy.timeout());
+    }
+
+    private static Instant saturatedPlus(final Instant instant, final Duration duration) {
+        try {
+            final Instant later = instant.plus(duration);
+            return later.isAfter(LATEST_DEADLINE) ? LATEST_DEADLINE : later;
+        } catch (final ArithmeticException | DateTimeException e) {
+            return LATEST_DEADLINE;
+        }
+    }
+
+    private void waitUntil(final Instant due) {
+        final Duration wait = Duration.between(clock.instant(), due);
+        if (wait.isNegative() || wait.isZero()) {
+            return;
+        }
+        try {
+            sleeper.sleep(wait);
+        } catch (final InterruptedException e) {
+            throw new RetryException(e);
+        }
+    }
+
+    /**
+     * Records the progress of the computation after every execution.
+     */
+    private final class Journaling implements Callable<RESULT> {
+
+        private final Callable<RESULT> callable;
+        private final String key;
+        private final Instant deadline;
+        private long executions;
+
+        private Journaling(final RetryState state, final Callable<RESULT> callable) {
+            this.callable = callable;
+            this.key = state.key();
+            this.deadline = state.deadline();
+            this.executions = state.executions();
+        }
+
+        @Override
+        public RESULT call() throws Exception {
+            final RESULT result;
+            try {
+                result = callable.call();
+            } catch (final Exception e) {
+                record(retryPolicy.delayAfter(e));
+                throw e;
+            }
+            record(retryPolicy.delayAfter(result));
+            return result;
+        }
+
+        private void record(final Duration delay) {
+            executions++;
+            final RetryState state = new RetryState(key, executions, deadline, saturatedPlus(clock.instant(), delay));
+            update(key, () -> journal.record(state));
+        }
+    }
+}
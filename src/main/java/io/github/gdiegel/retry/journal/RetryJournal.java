@@ -0,0 +1,303 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+/**
+ * A {@link RetryJournal} persists the {@link RetryState} of long-running computations in a memory-mapped, append-only
+ * file so they can be resumed after a restart. Every update appends a compact record of a few dozen bytes to the
+ * mapping, which costs no system call. The latest state of every key is also kept in memory; once a quarter of the file
+ * holds superseded records, or once it is full, it is compacted into a new file holding only the latest state of the
+ * keys which haven't completed, which atomically replaces the old one. Compaction therefore happens in proportion to
+ * the rate of updates, keeping the cost of replaying the journal on startup bounded.
+ * <p>
+ * Records survive a crash of the process as soon as they are appended. They only survive a crash of the operating
+ * system once {@link #sync()} has been called. The file is locked exclusively while the journal is open, so only a
+ * single instance resumes the computations it holds.
+ * <p>
+ * Layout: an 8 byte header (magic number and version) followed by records of the form {@code short keyLength, long
+ * executions, long deadline, long nextDue, byte[] key}, with times in epoch milliseconds and {@code executions == -1}
+ * marking a completed computation. The key length is written last, a record with key length zero ends the journal.
+ *
+ * @author Gabriel Diegel
+ */
+public final class RetryJournal implements Closeable {
+
+    private static final int MAGIC = 0x52545259;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int RECORD_HEADER_SIZE = Short.BYTES + 3 * Long.BYTES;
+    private static final int DEFAULT_CAPACITY = 1 << 20;
+    private static final long COMPLETED = -1;
+    private static final String CAPACITY_FORMAT = "Capacity: [%s]";
+
+    private final Path file;
+    private final Map<String, RetryState> states = new ConcurrentHashMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+    private int obsolete;
+
+    private RetryJournal(final Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Open the journal at the given path with a capacity of 1 MiB, creating it if it doesn't exist.
+     *
+     * @param file the path of the journal
+     * @return The opened {@link RetryJournal}
+     * @throws IOException if the journal can't be opened, isn't a journal or is locked by another instance
+     */
+    public static RetryJournal open(final Path file) throws IOException {
+        return open(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Open the journal at the given path, creating it if it doesn't exist. An existing journal keeps its size if it is
+     * larger than the given capacity.
+     *
+     * @param file     the path of the journal
+     * @param capacity the initial size of the journal in bytes
+     * @return The opened {@link RetryJournal}
+     * @throws IOException if the journal can't be opened, isn't a journal or is locked by another instance
+     */
+    public static RetryJournal open(final Path file, final int capacity) throws IOException {
+        checkNotNull(file, "file");
+        checkArgument(capacity > HEADER_SIZE + RECORD_HEADER_SIZE, format(CAPACITY_FORMAT, capacity));
+        final RetryJournal journal = new RetryJournal(file.toAbsolutePath());
+        journal.map(capacity);
+        journal.replay();
+        return journal;
+    }
+
+    /**
+     * @param key the key identifying the computation
+     * @return The latest {@link RetryState} of the computation, empty if it is unknown or has completed
+     */
+    public Optional<RetryState> state(final String key) {
+        checkNotNull(key, "key");
+        return Optional.ofNullable(states.get(key));
+    }
+
+    /**
+     * @return The latest {@link RetryState} of every computation which hasn't completed, by key
+     */
+    public Map<String, RetryState> states() {
+        return Map.copyOf(states);
+    }
+
+    /**
+     * Append the given {@link RetryState}, superseding any previous state of its key.
+     *
+     * @param state the {@link RetryState} to append
+     * @throws UncheckedIOException if the journal needs compacting and can't be compacted
+     */
+    public synchronized void record(final RetryState state) {
+        checkNotNull(state, "state");
+        final byte[] key = state.key().getBytes(StandardCharsets.UTF_8);
+        append(key, state.executions(), state.deadline().toEpochMilli(), state.nextDue().toEpochMilli());
+        if (states.put(state.key(), state) != null) {
+            obsolete += RECORD_HEADER_SIZE + key.length;
+            compactIfMostlyObsolete();
+        }
+    }
+
+    /**
+     * Mark the computation identified by the given key as completed, so it won't be resumed.
+     *
+     * @param key the key identifying the computation
+     * @throws UncheckedIOException if the journal needs compacting and can't be compacted
+     */
+    public synchronized void complete(final String key) {
+        checkNotNull(key, "key");
+        if (states.remove(key) != null) {
+            final byte[] encoded = key.getBytes(StandardCharsets.UTF_8);
+            append(encoded, COMPLETED, 0, 0);
+            // both the last state and the completion are superseded by leaving the key out
+            obsolete += 2 * (RECORD_HEADER_SIZE + encoded.length);
+            compactIfMostlyObsolete();
+        }
+    }
+
+    /**
+     * Rewrite the journal keeping only the latest state of every computation which hasn't completed.
+     *
+     * @throws IOException if the journal can't be rewritten
+     */
+    public synchronized void compact() throws IOException {
+        compact(0);
+    }
+
+    /**
+     * Flush all appended records to the storage device.
+     */
+    public synchronized void sync() {
+        checkState(channel != null, "Closed");
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            buffer.force();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void append(final byte[] key, final long executions, final long deadline, final long nextDue) {
+        checkState(channel != null, "Closed");
+        checkArgument(key.length <= Short.MAX_VALUE, format("Key length: [%s]", key.length));
+        final int size = RECORD_HEADER_SIZE + key.length;
+        if (position + size > buffer.capacity()) {
+            try {
+                compact(size);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        write(buffer, position, key, executions, deadline, nextDue);
+        position += size;
+    }
+
+    private void compactIfMostlyObsolete() {
+        if (obsolete > buffer.capacity() / 4) {
+            try {
+                compact(0);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void compact(final int required) throws IOException {
+        checkState(channel != null, "Closed");
+        int live = HEADER_SIZE + required;
+        for (final String key : states.keySet()) {
+            live += RECORD_HEADER_SIZE + key.getBytes(StandardCharsets.UTF_8).length;
+        }
+        final int capacity = Math.max(buffer.capacity(), 2 * live);
+        final Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer mapped = target.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            mapped.putInt(0, MAGIC).putInt(Integer.BYTES, VERSION);
+            int offset = HEADER_SIZE;
+            for (final RetryState state : states.values()) {
+                final byte[] key = state.key().getBytes(StandardCharsets.UTF_8);
+                write(mapped, offset, key, state.executions(), state.deadline().toEpochMilli(), state.nextDue().toEpochMilli());
+                offset += RECORD_HEADER_SIZE + key.length;
+            }
+            mapped.force();
+        }
+        channel.close();
+        Files.move(compacted, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // the lock went with the replaced file
+        map(capacity);
+        replay();
+    }
+
+    private static void write(final MappedByteBuffer buffer, final int offset, final byte[] key, final long executions, final long deadline,
+                              final long nextDue) {
+        buffer.putLong(offset + Short.BYTES, executions)
+                .putLong(offset + Short.BYTES + Long.BYTES, deadline)
+                .putLong(offset + Short.BYTES + 2 * Long.BYTES, nextDue)
+                .put(offset + RECORD_HEADER_SIZE, key);
+        // the record only becomes visible once its length is written
+        VarHandle.releaseFence();
+        buffer.putShort(offset, (short) key.length);
+    }
+
+    private void map(final int capacity) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (tryLock(channel) == null) {
+            channel.close();
+            channel = null;
+            throw new IOException(format("Retry journal locked by another instance: [%s]", file));
+        }
+        final boolean created = channel.size() == 0;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(capacity, channel.size()));
+        if (created) {
+            buffer.putInt(0, MAGIC).putInt(Integer.BYTES, VERSION);
+        } else if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+            channel.close();
+            channel = null;
+            throw new IOException(format("Not a retry journal: [%s]", file));
+        }
+    }
+
+    /**
+     * @return The exclusive {@link FileLock}, released when the channel is closed, {@code null} if it is held elsewhere
+     */
+    private static FileLock tryLock(final FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (final OverlappingFileLockException e) {
+            // held by another channel of this virtual machine
+            return null;
+        }
+    }
+
+    private void replay() {
+        states.clear();
+        int offset = HEADER_SIZE;
+        while (offset + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            final int keyLength = buffer.getShort(offset);
+            if (keyLength <= 0 || offset + RECORD_HEADER_SIZE + keyLength > buffer.capacity()) {
+                break;
+            }
+            final byte[] key = new byte[keyLength];
+            buffer.get(offset + RECORD_HEADER_SIZE, key);
+            final String decoded = new String(key, StandardCharsets.UTF_8);
+            final long executions = buffer.getLong(offset + Short.BYTES);
+            if (executions == COMPLETED) {
+                states.remove(decoded);
+            } else {
+                states.put(decoded, new RetryState(decoded, executions, Instant.ofEpochMilli(buffer.getLong(offset + Short.BYTES + Long.BYTES)),
+                        Instant.ofEpochMilli(buffer.getLong(offset + Short.BYTES + 2 * Long.BYTES))));
+            }
+            offset += RECORD_HEADER_SIZE + keyLength;
+        }
+        position = offset;
+        obsolete = position - HEADER_SIZE;
+        for (final String key : states.keySet()) {
+            obsolete -= RECORD_HEADER_SIZE + key.getBytes(StandardCharsets.UTF_8).length;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.journal;
+
+import java.time.Instant;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+/**
+ * The persisted state of a computation which hasn't completed yet.
+ *
+ * @param key        the key identifying the computation
+ * @param executions the number of executions performed so far
+ * @param deadline   the {@link Instant} after which the computation is exhausted
+ * @param nextDue    the {@link Instant} at which the next execution is due
+ * @author Gabriel Diegel
+ */
+public record RetryState(String key, long executions, Instant deadline, Instant nextDue) {
+
+    /**
+     * Construct a new {@link RetryState}.
+     *
+     * @param key        the key identifying the computation
+     * @param executions the number of executions performed so far
+     * @param deadline   the {@link Instant} after which the computation is exhausted
+     * @param nextDue    the {@link Instant} at which the next execution is due
+     */
+    public RetryState {
+        checkNotNull(key, "key");
+        checkArgument(!key.isEmpty(), "Empty key");
+        checkArgument(executions >= 0, format("Executions: [%s]", executions));
+        checkNotNull(deadline, "deadline");
+        checkNotNull(nextDue, "nextDue");
+    }
+}
@@ -15,7 +15,13 @@
  */
 package io.github.gdiegel.retry.policy;
 
+import io.github.gdiegel.retry.exception.RetryAfterException;
+import io.github.gdiegel.retry.ratelimit.Pacer;
+
 import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 /**
@@ -27,7 +33,79 @@ import java.util.function.Predicate;
  */
 public record RetryPolicy<RESULT>(Duration interval, Duration timeout, long maximumExecutions,
                                   Predicate<Exception> ignorableException,
-                                  Predicate<RESULT> stopCondition, boolean throwing) {
+                                  Predicate<RESULT> stopCondition, boolean throwing, Pacer pacer,
+                                  Function<RESULT, Optional<Duration>> resultDelayHint,
+                                  Function<Exception, Optional<Duration>> exceptionDelayHint,
+                                  Duration minimumInterval, Duration maximumInterval) {
+
+    /**
+     * No upper bound for suggested delays.
+     */
+    static final Duration UNBOUNDED = ChronoUnit.FOREVER.getDuration();
+
+    /**
+     * Construct a {@link RetryPolicy} of {@code RESULT} whose executions are not paced and which only honours the delays
+     * suggested by a {@link RetryAfterException}.
+     *
+     * @param interval           the interval between executions
+     * @param timeout            the absolute timeout after which executions are aborted
+     * @param maximumExecutions  the absolute number of executions after which executions are aborted
+     * @param ignorableException the exceptions to ignore during computation
+     * @param stopCondition      the condition on {@code RESULT} after which executions are stopped
+     * @param throwing           whether to throw when retries are exhausted
+     */
+    public RetryPolicy(final Duration interval, final Duration timeout, final long maximumExecutions,
+                       final Predicate<Exception> ignorableException, final Predicate<RESULT> stopCondition,
+                       final boolean throwing) {
+        this(interval, timeout, maximumExecutions, ignorableException, stopCondition, throwing, Pacer.unpaced(),
+                result -> Optional.empty(), RetryPolicy::retryAfter, Duration.ZERO, UNBOUNDED);
+    }
+
+    /**
+     * Return the delay before the execution following the one which returned the given result: the delay suggested for
+     * the result, bounded by the minimum and maximum interval, or the interval if nothing was suggested. A hint function
+     * which throws counts as suggesting nothing.
+     *
+     * @param result the result of the execution, may be {@code null}
+     * @return The delay before the next execution
+     */
+    public Duration delayAfter(final RESULT result) {
+        return result == null ? interval : bounded(resultDelayHint, result);
+    }
+
+    /**
+     * Return the delay before the execution following the one which threw the given ignorable exception: the delay
+     * suggested for the exception, bounded by the minimum and maximum interval, or the interval if nothing was
+     * suggested. A hint function which throws counts as suggesting nothing.
+     *
+     * @param exception the exception thrown by the execution
+     * @return The delay before the next execution
+     */
+    public Duration delayAfter(final Exception exception) {
+        return bounded(exceptionDelayHint, exception);
+    }
+
+    static Optional<Duration> retryAfter(final Exception exception) {
+        return exception instanceof RetryAfterException retryAfterException ? Optional.of(retryAfterException.getRetryAfter()) : Optional.empty();
+    }
+
+    private <T> Duration bounded(final Function<T, Optional<Duration>> delayHint, final T value) {
+        final Optional<Duration> hint;
+        try {
+            hint = delayHint.apply(value);
+        } catch (final RuntimeException e) {
+            // e.g. a Retry-After header holding an HTTP-date the hint function can't parse
+            return interval;
+        }
+        if (hint == null || hint.isEmpty()) {
+            return interval;
+        }
+        final Duration suggested = hint.get();
+        if (suggested.compareTo(minimumInterval) < 0) {
+            return minimumInterval;
+        }
+        return suggested.compareTo(maximumInterval) > 0 ? maximumInterval : suggested;
+    }
 
     /**
      * Return a fluent {@link RetryPolicyBuilder} of {@code RESULT}.
@@ -16,9 +16,15 @@
 package io.github.gdiegel.retry.policy;
 
 import io.github.gdiegel.retry.exception.RetriesExhaustedException;
+import io.github.gdiegel.retry.exception.RetryAfterException;
+import io.github.gdiegel.retry.ratelimit.KeyedRateLimiter;
+import io.github.gdiegel.retry.ratelimit.Pacer;
 
 import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -35,6 +41,7 @@ public class RetryPolicyBuilder<RESULT> {
     private static final String INTERVAL_FORMAT = "Interval: [%s]";
     private static final String TIMEOUT_FORMAT = "Timeout: [%s]";
     private static final String MAXIMUM_EXECUTIONS_FORMAT = "Maximum executions: [%s]";
+    private static final String INTERVAL_BOUNDS_FORMAT = "Minimum interval: [%s], maximum interval: [%s]";
 
     /**
      * Default: Interval of 10 milliseconds between executions.
@@ -68,6 +75,31 @@ public class RetryPolicyBuilder<RESULT> {
      */
     private boolean throwing = false;
 
+    /**
+     * Default: Executions are not paced.
+     */
+    private Pacer pacer = Pacer.unpaced();
+
+    /**
+     * Default: Results don't suggest a delay.
+     */
+    private Function<RESULT, Optional<Duration>> resultDelayHint = result -> Optional.empty();
+
+    /**
+     * Default: A {@link RetryAfterException} suggests its delay, other exceptions don't suggest a delay.
+     */
+    private Function<Exception, Optional<Duration>> exceptionDelayHint = RetryPolicy::retryAfter;
+
+    /**
+     * Default: Suggested delays have no lower bound.
+     */
+    private Duration minimumInterval = Duration.ZERO;
+
+    /**
+     * Default: Suggested delays have no upper bound other than the timeout.
+     */
+    private Duration maximumInterval = RetryPolicy.UNBOUNDED;
+
     /**
      * Return a fluent {@link RetryPolicyBuilder} of {@code RESULT}.
      *
@@ -78,6 +110,31 @@ public class RetryPolicyBuilder<RESULT> {
         return new RetryPolicyBuilder<>();
     }
 
+    /**
+     * Return a fluent {@link RetryPolicyBuilder} of {@code RESULT} initialized with the configuration of the given
+     * {@link RetryPolicy} of {@code RESULT}.
+     *
+     * @param retryPolicy the retry policy to copy the configuration from
+     * @param <RESULT>    the type of the result of the computation
+     * @return an instance of {@link RetryPolicyBuilder} of {@code RESULT}
+     */
+    public static <RESULT> RetryPolicyBuilder<RESULT> from(final RetryPolicy<RESULT> retryPolicy) {
+        checkNotNull(retryPolicy, "retryPolicy");
+        final RetryPolicyBuilder<RESULT> builder = new RetryPolicyBuilder<>();
+        builder.interval = retryPolicy.interval();
+        builder.timeout = retryPolicy.timeout();
+        builder.maximumExecutions = retryPolicy.maximumExecutions();
+        builder.ignorableException = retryPolicy.ignorableException();
+        builder.stopCondition = retryPolicy.stopCondition();
+        builder.throwing = retryPolicy.throwing();
+        builder.pacer = retryPolicy.pacer();
+        builder.resultDelayHint = retryPolicy.resultDelayHint();
+        builder.exceptionDelayHint = retryPolicy.exceptionDelayHint();
+        builder.minimumInterval = retryPolicy.minimumInterval();
+        builder.maximumInterval = retryPolicy.maximumInterval();
+        return builder;
+    }
+
     /**
      * @param interval a {@link Duration} representing the interval between executions
      * @return self
@@ -152,13 +209,85 @@ public class RetryPolicyBuilder<RESULT> {
         return this;
     }
 
+    /**
+     * @param pacer a {@link Pacer} reserving a permit before every execution, delaying the execution until the permit
+     *              is granted
+     * @return self
+     */
+    public RetryPolicyBuilder<RESULT> withPacer(final Pacer pacer) {
+        checkNotNull(pacer, "pacer");
+        this.pacer = pacer;
+        return this;
+    }
+
+    /**
+     * Pace executions using a {@link KeyedRateLimiter} shared between callers, e.g. to limit the rate of executions
+     * against the same host across all policies targeting it.
+     *
+     * @param rateLimiter the {@link KeyedRateLimiter} of {@code KEY} to reserve permits from
+     * @param key         a {@link Supplier} of the key to reserve permits for, resolved before every execution
+     * @param <KEY>       the type of the key executions are limited by
+     * @return self
+     */
+    public <KEY> RetryPolicyBuilder<RESULT> withRateLimiter(final KeyedRateLimiter<KEY> rateLimiter, final Supplier<? extends KEY> key) {
+        checkNotNull(rateLimiter, "rateLimiter");
+        return withPacer(rateLimiter.pacerFor(key));
+    }
+
+    /**
+     * Add function which will be evaluated on every {@code RESULT} to suggest the delay before the next execution,
+     * e.g. from a {@code Retry-After} header of an HTTP response. The suggested delay replaces the interval, bounded by
+     * the minimum and maximum interval. A function which throws counts as suggesting nothing.
+     *
+     * @param resultDelayHint a {@link Function} of {@code RESULT} returning the suggested delay, or an empty {@link
+     *                        Optional} to use the interval
+     * @return self
+     */
+    public RetryPolicyBuilder<RESULT> withResultDelayHint(final Function<RESULT, Optional<Duration>> resultDelayHint) {
+        checkNotNull(resultDelayHint, "resultDelayHint");
+        this.resultDelayHint = resultDelayHint;
+        return this;
+    }
+
+    /**
+     * Add function which will be evaluated on every ignorable {@link Exception} to suggest the delay before the next
+     * execution, e.g. from a broker's backoff hint. The suggested delay replaces the interval, bounded by the minimum
+     * and maximum interval. A function which throws counts as suggesting nothing. Replaces the default, which honours
+     * {@link RetryAfterException}.
+     *
+     * @param exceptionDelayHint a {@link Function} of {@link Exception} returning the suggested delay, or an empty
+     *                           {@link Optional} to use the interval
+     * @return self
+     */
+    public RetryPolicyBuilder<RESULT> withExceptionDelayHint(final Function<Exception, Optional<Duration>> exceptionDelayHint) {
+        checkNotNull(exceptionDelayHint, "exceptionDelayHint");
+        this.exceptionDelayHint = exceptionDelayHint;
+        return this;
+    }
+
+    /**
+     * @param minimumInterval a {@link Duration} representing the shortest suggested delay to honour
+     * @param maximumInterval a {@link Duration} representing the longest suggested delay to honour
+     * @return self
+     */
+    public RetryPolicyBuilder<RESULT> withIntervalBounds(final Duration minimumInterval, final Duration maximumInterval) {
+        checkNotNull(minimumInterval, "minimumInterval");
+        checkNotNull(maximumInterval, "maximumInterval");
+        checkArgument(!minimumInterval.isNegative() && minimumInterval.compareTo(maximumInterval) <= 0,
+                format(INTERVAL_BOUNDS_FORMAT, minimumInterval, maximumInterval));
+        this.minimumInterval = minimumInterval;
+        this.maximumInterval = maximumInterval;
+        return this;
+    }
+
     /**
      * Build the {@link RetryPolicy} and return it.
      *
      * @return An instance of {@link RetryPolicy} of {@code RESULT}
      */
     public RetryPolicy<RESULT> build() {
-        return new RetryPolicy<>(this.interval, this.timeout, this.maximumExecutions, this.ignorableException, this.stopCondition, this.throwing);
+        return new RetryPolicy<>(this.interval, this.timeout, this.maximumExecutions, this.ignorableException, this.stopCondition, this.throwing, this.pacer,
+                this.resultDelayHint, this.exceptionDelayHint, this.minimumInterval, this.maximumInterval);
     }
 
 }
@@ -0,0 +1,192 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.ratelimit;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A {@link KeyedRateLimiter} of {@code KEY} limits the rate of executions per key, e.g. per host or per tenant, using
+ * one token bucket per key. Executions over the rate are paced, not rejected: reserving a permit returns how long the
+ * caller has to wait before executing.
+ * <p>
+ * Buckets are held in a striped, size-bounded map and are evicted after being idle for a configurable time. A bucket is
+ * a single {@link AtomicLong} holding its theoretical arrival time (the generic cell rate algorithm), so computing wait
+ * times only takes a compare-and-set and never blocks. A bucket is only idle once its theoretical arrival time has
+ * passed, one expiring while permits are still reserved ahead is kept.
+ *
+ * @param <KEY> the type of the key executions are limited by
+ * @author Gabriel Diegel
+ */
+public final class KeyedRateLimiter<KEY> {
+
+    private final LoadingCache<KEY, Bucket> buckets;
+    private final ConcurrentMap<KEY, Bucket> expiredAhead = new ConcurrentHashMap<>();
+    private final Ticker ticker;
+    private final long emissionInterval;
+    private final long tolerance;
+
+    KeyedRateLimiter(final double permitsPerSecond, final int burst, final int concurrencyLevel, final long maximumKeys,
+                     final Duration expireAfterIdle, final Ticker ticker) {
+        this.ticker = ticker;
+        this.emissionInterval = Math.max(1, (long) (Duration.ofSeconds(1).toNanos() / permitsPerSecond));
+        this.tolerance = emissionInterval * (burst - 1);
+        this.buckets = CacheBuilder.newBuilder()
+                .concurrencyLevel(concurrencyLevel)
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(expireAfterIdle)
+                .ticker(ticker)
+                .removalListener((RemovalListener<KEY, Bucket>) this::retainIfReserved)
+                .build(CacheLoader.from(this::load));
+    }
+
+    /**
+     * Return a fluent {@link KeyedRateLimiterBuilder} of {@code KEY}.
+     *
+     * @param <KEY> the type of the key executions are limited by
+     * @return an instance of {@link KeyedRateLimiterBuilder} of {@code KEY}
+     */
+    public static <KEY> KeyedRateLimiterBuilder<KEY> builder() {
+        return KeyedRateLimiterBuilder.instance();
+    }
+
+    /**
+     * Reserve a permit for a single execution against the given key.
+     *
+     * @param key the key to reserve a permit for
+     * @return The {@link Duration} to wait before executing, {@link Duration#ZERO} if the execution may proceed
+     * immediately
+     */
+    public Duration reserve(final KEY key) {
+        checkNotNull(key, "key");
+        return Duration.ofNanos(buckets.getUnchecked(key).reserve(ticker.read()));
+    }
+
+    /**
+     * Reserve a permit for a single execution against the given key, unless the execution would have to wait longer
+     * than the given maximum. No permit is reserved in that case.
+     *
+     * @param key         the key to reserve a permit for
+     * @param maximumWait the longest {@link Duration} the execution may wait
+     * @return The {@link Duration} to wait before executing, empty if the execution would have to wait longer than the
+     * given maximum
+     */
+    public Optional<Duration> tryReserve(final KEY key, final Duration maximumWait) {
+        checkNotNull(key, "key");
+        checkNotNull(maximumWait, "maximumWait");
+        final long wait = buckets.getUnchecked(key).tryReserve(ticker.read(), maximumWait);
+        return wait < 0 ? Optional.empty() : Optional.of(Duration.ofNanos(wait));
+    }
+
+    /**
+     * Return a {@link Pacer} reserving permits against the key returned by the given {@link Supplier}. The key is
+     * resolved anew for every execution.
+     *
+     * @param key a {@link Supplier} of the key to reserve permits for
+     * @return A {@link Pacer} backed by this {@link KeyedRateLimiter}
+     */
+    public Pacer pacerFor(final Supplier<? extends KEY> key) {
+        checkNotNull(key, "key");
+        return new Pacer() {
+            @Override
+            public Duration reserve() {
+                return KeyedRateLimiter.this.reserve(key.get());
+            }
+
+            @Override
+            public Optional<Duration> tryReserve(final Duration maximumWait) {
+                return KeyedRateLimiter.this.tryReserve(key.get(), maximumWait);
+            }
+        };
+    }
+
+    /**
+     * @return The approximate number of keys currently tracked
+     */
+    public long size() {
+        buckets.cleanUp();
+        final long now = ticker.read();
+        expiredAhead.values().removeIf(bucket -> !bucket.reservedAhead(now));
+        return buckets.size() + expiredAhead.size();
+    }
+
+    private Bucket load(final KEY key) {
+        final Bucket expired = expiredAhead.remove(key);
+        return expired != null ? expired : new Bucket(ticker.read());
+    }
+
+    /**
+     * Sets a bucket expiring while permits are still reserved ahead aside, to be loaded again on its next use. The cache
+     * itself can't be written to from within its removal listener.
+     */
+    private void retainIfReserved(final RemovalNotification<KEY, Bucket> notification) {
+        final long now = ticker.read();
+        expiredAhead.values().removeIf(bucket -> !bucket.reservedAhead(now));
+        final Bucket bucket = notification.getValue();
+        if (notification.getCause() == RemovalCause.EXPIRED && bucket != null && bucket.reservedAhead(now)) {
+            expiredAhead.put(notification.getKey(), bucket);
+        }
+    }
+
+    private final class Bucket {
+
+        private final AtomicLong theoreticalArrivalTime;
+
+        private Bucket(final long now) {
+            this.theoreticalArrivalTime = new AtomicLong(now);
+        }
+
+        private boolean reservedAhead(final long now) {
+            return theoreticalArrivalTime.get() > now;
+        }
+
+        private long reserve(final long now) {
+            return tryReserve(now, ChronoUnit.FOREVER.getDuration());
+        }
+
+        /**
+         * @return The nanoseconds to wait, negative if that would exceed the given maximum and nothing was reserved
+         */
+        private long tryReserve(final long now, final Duration maximumWait) {
+            while (true) {
+                final long current = theoreticalArrivalTime.get();
+                final long start = Math.max(current, now);
+                final long wait = Math.max(0, start - tolerance - now);
+                if (Duration.ofNanos(wait).compareTo(maximumWait) > 0) {
+                    return -1;
+                }
+                if (theoreticalArrivalTime.compareAndSet(current, start + emissionInterval)) {
+                    return wait;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.ratelimit;
+
+import com.google.common.base.Ticker;
+
+import java.time.Duration;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+/**
+ * Allows fluently building a {@link KeyedRateLimiter} of {@code KEY} using sensible defaults.
+ *
+ * @param <KEY> the type of the key executions are limited by
+ * @author Gabriel Diegel
+ */
+public class KeyedRateLimiterBuilder<KEY> {
+
+    private static final String PERMITS_PER_SECOND_FORMAT = "Permits per second: [%s]";
+    private static final String BURST_FORMAT = "Burst: [%s]";
+    private static final String CONCURRENCY_LEVEL_FORMAT = "Concurrency level: [%s]";
+    private static final String MAXIMUM_KEYS_FORMAT = "Maximum keys: [%s]";
+    private static final String EXPIRE_AFTER_IDLE_FORMAT = "Expire after idle: [%s]";
+
+    /**
+     * Default: 10 executions per second and key.
+     */
+    private double permitsPerSecond = 10;
+
+    /**
+     * Default: No bursts, executions are evenly spaced.
+     */
+    private int burst = 1;
+
+    /**
+     * Default: 16 stripes.
+     */
+    private int concurrencyLevel = 16;
+
+    /**
+     * Default: Track at most 10000 keys, evicting the least recently used ones beyond that.
+     */
+    private long maximumKeys = 10_000;
+
+    /**
+     * Default: Evict buckets which haven't been used for one minute.
+     */
+    private Duration expireAfterIdle = Duration.ofMinutes(1);
+
+    /**
+     * Default: System ticker.
+     */
+    private Ticker ticker = Ticker.systemTicker();
+
+    /**
+     * Return a fluent {@link KeyedRateLimiterBuilder} of {@code KEY}.
+     *
+     * @param <KEY> the type of the key executions are limited by
+     * @return an instance of {@link KeyedRateLimiterBuilder} of {@code KEY}
+     */
+    public static <KEY> KeyedRateLimiterBuilder<KEY> instance() {
+        return new KeyedRateLimiterBuilder<>();
+    }
+
+    /**
+     * @param permitsPerSecond the sustained number of executions per second allowed for every key
+     * @return self
+     */
+    public KeyedRateLimiterBuilder<KEY> withPermitsPerSecond(final double permitsPerSecond) {
+        checkArgument(permitsPerSecond > 0 && Double.isFinite(permitsPerSecond), format(PERMITS_PER_SECOND_FORMAT, permitsPerSecond));
+        this.permitsPerSecond = permitsPerSecond;
+        return this;
+    }
+
+    /**
+     * @param burst the number of executions per key which may proceed back to back without waiting after the key has
+     *              been idle
+     * @return self
+     */
+    public KeyedRateLimiterBuilder<KEY> withBurst(final int burst) {
+        checkArgument(burst > 0, format(BURST_FORMAT, burst));
+        this.burst = burst;
+        return this;
+    }
+
+    /**
+     * @param concurrencyLevel the number of stripes of the map holding the buckets
+     * @return self
+     */
+    public KeyedRateLimiterBuilder<KEY> withConcurrencyLevel(final int concurrencyLevel) {
+        checkArgument(concurrencyLevel > 0, format(CONCURRENCY_LEVEL_FORMAT, concurrencyLevel));
+        this.concurrencyLevel = concurrencyLevel;
+        return this;
+    }
+
+    /**
+     * @param maximumKeys the maximum number of keys to track, least recently used keys are evicted beyond that
+     * @return self
+     */
+    public KeyedRateLimiterBuilder<KEY> withMaximumKeys(final long maximumKeys) {
+        checkArgument(maximumKeys > 0, format(MAXIMUM_KEYS_FORMAT, maximumKeys));
+        this.maximumKeys = maximumKeys;
+        return this;
+    }
+
+    /**
+     * @param expireAfterIdle a {@link Duration} after which the bucket of an unused key is evicted. Evicting a bucket
+     *                        is lossless as long as this is longer than the time it takes to refill the burst
+     * @return self
+     */
+    public KeyedRateLimiterBuilder<KEY> withExpireAfterIdle(final Duration expireAfterIdle) {
+        checkNotNull(expireAfterIdle, "expireAfterIdle");
+        checkArgument(!expireAfterIdle.isNegative(), format(EXPIRE_AFTER_IDLE_FORMAT, expireAfterIdle));
+        this.expireAfterIdle = expireAfterIdle;
+        return this;
+    }
+
+    /**
+     * @param ticker the {@link Ticker} to measure time with
+     * @return self
+     */
+    public KeyedRateLimiterBuilder<KEY> withTicker(final Ticker ticker) {
+        checkNotNull(ticker, "ticker");
+        this.ticker = ticker;
+        return this;
+    }
+
+    /**
+     * Build the {@link KeyedRateLimiter} and return it.
+     *
+     * @return An instance of {@link KeyedRateLimiter} of {@code KEY}
+     */
+    public KeyedRateLimiter<KEY> build() {
+        return new KeyedRateLimiter<>(permitsPerSecond, burst, concurrencyLevel, maximumKeys, expireAfterIdle, ticker);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.ratelimit;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * A {@link Pacer} paces executions of the computation. Before every execution a permit is reserved and the execution
+ * is delayed by the returned {@link Duration}, so executions are spread out rather than rejected.
+ *
+ * @author Gabriel Diegel
+ */
+@FunctionalInterface
+public interface Pacer {
+
+    /**
+     * Reserve a permit for a single execution.
+     *
+     * @return The {@link Duration} to wait before executing, {@link Duration#ZERO} if the execution may proceed
+     * immediately
+     */
+    Duration reserve();
+
+    /**
+     * Reserve a permit for a single execution unless the execution would have to wait longer than the given maximum,
+     * e.g. because the computation would time out first. Implementations shouldn't reserve a permit in that case; the
+     * default implementation can't avoid it, as it delegates to {@link #reserve()}.
+     *
+     * @param maximumWait the longest {@link Duration} the execution may wait
+     * @return The {@link Duration} to wait before executing, empty if the execution would have to wait longer than the
+     * given maximum
+     */
+    default Optional<Duration> tryReserve(final Duration maximumWait) {
+        final Duration wait = reserve();
+        return wait.compareTo(maximumWait) > 0 ? Optional.empty() : Optional.of(wait);
+    }
+
+    /**
+     * @return The {@link Pacer} which never delays executions
+     */
+    static Pacer unpaced() {
+        return Unpaced.INSTANCE;
+    }
+}
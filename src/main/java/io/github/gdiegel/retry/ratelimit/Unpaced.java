@@ -0,0 +1,39 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.ratelimit;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * The {@link Pacer} which never delays executions, a singleton so unpaced policies can be told apart.
+ *
+ * @author Gabriel Diegel
+ */
+enum Unpaced implements Pacer {
+
+    INSTANCE;
+
+    @Override
+    public Duration reserve() {
+        return Duration.ZERO;
+    }
+
+    @Override
+    public Optional<Duration> tryReserve(final Duration maximumWait) {
+        return Optional.of(Duration.ZERO);
+    }
+}
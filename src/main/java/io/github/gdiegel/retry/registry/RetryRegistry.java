@@ -0,0 +1,346 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.registry;
+
+import io.github.gdiegel.retry.executor.DefaultRetryExecutor;
+import io.github.gdiegel.retry.executor.RetryExecutor;
+import io.github.gdiegel.retry.policy.RetryPolicy;
+import io.github.gdiegel.retry.policy.RetryPolicyBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+/**
+ * A {@link RetryRegistry} holds named {@link RetryPolicy}s together with a shared {@link RetryExecutor} for each of
+ * them. Policies are registered in code and their interval, timeout, maximum executions and throwing behaviour can be
+ * overridden from a properties file, which may also define new policies using the defaults of {@link
+ * RetryPolicyBuilder}:
+ * <pre>
+ * inventory.interval=PT0.5S
+ * inventory.timeout=PT10S
+ * inventory.maximumExecutions=5
+ * inventory.throwing=true
+ * </pre>
+ * Durations use the ISO-8601 format of {@link Duration#parse(CharSequence)}, {@code throwing} is either {@code true} or
+ * {@code false}. The file can be watched for changes, in which case every change atomically swaps in the new policies
+ * once the file has stopped changing for a short quiet period, so a file is never loaded while it is half written.
+ * Writers which may pause for longer while writing should replace the file by an atomic rename instead. Computations
+ * which are already running finish with the policy they were started with, new computations pick up the new policy.
+ *
+ * @author Gabriel Diegel
+ */
+public final class RetryRegistry implements Closeable {
+
+    private static final System.Logger LOGGER = System.getLogger(RetryRegistry.class.getName());
+    private static final String UNKNOWN_POLICY_FORMAT = "Unknown retry policy: [%s]";
+    private static final String INVALID_PROPERTY_FORMAT = "Invalid property: [%s]";
+    private static final String INTERVAL = "interval";
+    private static final String TIMEOUT = "timeout";
+    private static final String MAXIMUM_EXECUTIONS = "maximumExecutions";
+    private static final String THROWING = "throwing";
+    private static final Set<String> PROPERTIES = Set.of(INTERVAL, TIMEOUT, MAXIMUM_EXECUTIONS, THROWING);
+    private static final Duration QUIET_PERIOD = Duration.ofMillis(100);
+
+    private final Map<String, RetryPolicy<?>> registered = new HashMap<>();
+    private Map<String, Map<String, String>> overrides = Map.of();
+    private volatile Map<String, DefaultRetryExecutor<?>> executors = Map.of();
+    private WatchService watchService;
+
+    /**
+     * Register a {@link RetryPolicy} of {@code RESULT} under the given name. Overrides loaded for the name are applied
+     * on top of it.
+     *
+     * @param name        the name of the policy
+     * @param retryPolicy the {@link RetryPolicy} of {@code RESULT} to register
+     * @param <RESULT>    the type of the result of the computation
+     * @return self
+     */
+    public synchronized <RESULT> RetryRegistry register(final String name, final RetryPolicy<RESULT> retryPolicy) {
+        checkNotNull(name, "name");
+        checkNotNull(retryPolicy, "retryPolicy");
+        registered.put(name, retryPolicy);
+        swap(overrides);
+        return this;
+    }
+
+    /**
+     * @param name     the name of the policy
+     * @param <RESULT> the type of the result of the computation
+     * @return The {@link RetryPolicy} of {@code RESULT} currently in effect for the given name
+     * @throws IllegalArgumentException if no policy with the given name exists
+     */
+    @SuppressWarnings("unchecked")
+    public <RESULT> RetryPolicy<RESULT> policy(final String name) {
+        return (RetryPolicy<RESULT>) current(name).retryPolicy();
+    }
+
+    /**
+     * Return a {@link RetryExecutor} of {@code RESULT} for the given name. The executor always follows the policy
+     * currently in effect, so it can be held on to across reloads.
+     *
+     * @param name     the name of the policy
+     * @param <RESULT> the type of the result of the computation
+     * @return A {@link RetryExecutor} of {@code RESULT} following the named policy
+     * @throws IllegalArgumentException if no policy with the given name exists
+     */
+    public <RESULT> RetryExecutor<RESULT> executor(final String name) {
+        current(name);
+        return callable -> this.<RESULT>currentExecutor(name).execute(callable);
+    }
+
+    /**
+     * @return The names of all policies currently in effect
+     */
+    public Set<String> names() {
+        return executors.keySet();
+    }
+
+    /**
+     * Load overrides from the given properties file and swap in the resulting policies. If the file is invalid, the
+     * policies currently in effect are retained.
+     *
+     * @param file the properties file to load
+     * @return self
+     * @throws IOException              if the file can't be read
+     * @throws IllegalArgumentException if the file contains an invalid property
+     */
+    public RetryRegistry load(final Path file) throws IOException {
+        checkNotNull(file, "file");
+        final Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return load(properties);
+    }
+
+    /**
+     * Load overrides from the given {@link Properties} and swap in the resulting policies. If the properties are
+     * invalid, the policies currently in effect are retained.
+     *
+     * @param properties the properties to load
+     * @return self
+     * @throws IllegalArgumentException if the properties contain an invalid property
+     */
+    public synchronized RetryRegistry load(final Properties properties) {
+        checkNotNull(properties, "properties");
+        final Map<String, Map<String, String>> parsed = new LinkedHashMap<>();
+        for (final String key : properties.stringPropertyNames()) {
+            final int separator = key.lastIndexOf('.');
+            checkArgument(separator > 0, format(INVALID_PROPERTY_FORMAT, key));
+            parsed.computeIfAbsent(key.substring(0, separator), name -> new HashMap<>())
+                    .put(key.substring(separator + 1), properties.getProperty(key).trim());
+        }
+        swap(parsed);
+        return this;
+    }
+
+    /**
+     * Load the given properties file and reload it whenever it changes, until this registry is closed. Reloading
+     * happens on a daemon thread once the contents of the file have been the same for a quiet period, failed reloads
+     * are logged and leave the policies currently in effect untouched.
+     *
+     * @param file the properties file to watch
+     * @return self
+     * @throws IOException if the file can't be read or watched
+     */
+    public synchronized RetryRegistry watch(final Path file) throws IOException {
+        checkNotNull(file, "file");
+        checkState(watchService == null, "Already watching");
+        final Path absolute = file.toAbsolutePath();
+        final WatchService newWatchService = absolute.getFileSystem().newWatchService();
+        try {
+            // register before loading, so a change in between isn't missed
+            absolute.getParent().register(newWatchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            load(absolute);
+        } catch (final IOException | RuntimeException e) {
+            newWatchService.close();
+            throw e;
+        }
+        watchService = newWatchService;
+        final Thread watcher = new Thread(() -> watchLoop(watchService, absolute), "retry-registry-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        return this;
+    }
+
+    /**
+     * Stop watching the properties file, if any. Policies remain in effect.
+     *
+     * @throws IOException if the underlying {@link WatchService} can't be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+
+    private void watchLoop(final WatchService watchService, final Path file) {
+        try {
+            while (true) {
+                final WatchKey watchKey = watchService.take();
+                final boolean changed = changed(watchKey, file);
+                if (!watchKey.reset()) {
+                    return;
+                }
+                if (changed) {
+                    reloadWhenSettled(watchService, file);
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ClosedWatchServiceException e) {
+            // closed, stop watching
+        }
+    }
+
+    /**
+     * Reload the file once its contents are the same before and after a quiet period without any change events.
+     */
+    private void reloadWhenSettled(final WatchService watchService, final Path file) throws InterruptedException {
+        byte[] settled = null;
+        while (true) {
+            final byte[] contents;
+            try {
+                contents = Files.readAllBytes(file);
+            } catch (final IOException e) {
+                LOGGER.log(System.Logger.Level.WARNING, format("Failed to reload retry policies from [%s]", file), e);
+                return;
+            }
+            if (Arrays.equals(settled, contents)) {
+                reload(file, contents);
+                return;
+            }
+            settled = awaitQuietPeriod(watchService, file) ? contents : null;
+        }
+    }
+
+    /**
+     * @return Whether the file didn't change during the quiet period, changes of other files in its directory don't
+     * count
+     */
+    private static boolean awaitQuietPeriod(final WatchService watchService, final Path file) throws InterruptedException {
+        final long deadline = System.nanoTime() + QUIET_PERIOD.toNanos();
+        long remaining = QUIET_PERIOD.toNanos();
+        while (remaining > 0) {
+            final WatchKey watchKey = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+            if (watchKey == null) {
+                return true;
+            }
+            final boolean changed = changed(watchKey, file);
+            watchKey.reset();
+            if (changed) {
+                return false;
+            }
+            remaining = deadline - System.nanoTime();
+        }
+        return true;
+    }
+
+    private static boolean changed(final WatchKey watchKey, final Path file) {
+        boolean changed = false;
+        for (final WatchEvent<?> event : watchKey.pollEvents()) {
+            changed |= file.getFileName().equals(event.context());
+        }
+        return changed;
+    }
+
+    private void reload(final Path file, final byte[] contents) {
+        try (Reader reader = new StringReader(new String(contents, StandardCharsets.UTF_8))) {
+            final Properties properties = new Properties();
+            properties.load(reader);
+            load(properties);
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, format("Failed to reload retry policies from [%s]", file), e);
+        }
+    }
+
+    private void swap(final Map<String, Map<String, String>> newOverrides) {
+        final Set<String> names = new HashSet<>(registered.keySet());
+        names.addAll(newOverrides.keySet());
+        final Map<String, DefaultRetryExecutor<?>> newExecutors = new HashMap<>();
+        for (final String name : names) {
+            final RetryPolicy<?> retryPolicy = build(name, registered.get(name), newOverrides.getOrDefault(name, Map.of()));
+            final DefaultRetryExecutor<?> executor = executors.get(name);
+            newExecutors.put(name, executor != null && executor.retryPolicy().equals(retryPolicy) ? executor : new DefaultRetryExecutor<>(retryPolicy));
+        }
+        overrides = newOverrides;
+        executors = Map.copyOf(newExecutors);
+    }
+
+    private static <RESULT> RetryPolicy<RESULT> build(final String name, final RetryPolicy<RESULT> base, final Map<String, String> override) {
+        final RetryPolicyBuilder<RESULT> builder = base == null ? RetryPolicyBuilder.instance() : RetryPolicyBuilder.from(base);
+        for (final Map.Entry<String, String> property : override.entrySet()) {
+            final String key = name + '.' + property.getKey();
+            checkArgument(PROPERTIES.contains(property.getKey()), format(INVALID_PROPERTY_FORMAT, key));
+            final String value = property.getValue();
+            try {
+                switch (property.getKey()) {
+                    case INTERVAL -> builder.withInterval(Duration.parse(value));
+                    case TIMEOUT -> builder.withTimeout(Duration.parse(value));
+                    case MAXIMUM_EXECUTIONS -> builder.withMaximumExecutions(Long.parseLong(value));
+                    case THROWING -> builder.throwing(parseBoolean(value));
+                    default -> throw new IllegalStateException(key);
+                }
+            } catch (final RuntimeException e) {
+                throw new IllegalArgumentException(format(INVALID_PROPERTY_FORMAT, key), e);
+            }
+        }
+        return builder.build();
+    }
+
+    private static boolean parseBoolean(final String value) {
+        checkArgument("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value), value);
+        return Boolean.parseBoolean(value);
+    }
+
+    private DefaultRetryExecutor<?> current(final String name) {
+        checkNotNull(name, "name");
+        final DefaultRetryExecutor<?> executor = executors.get(name);
+        checkArgument(executor != null, format(UNKNOWN_POLICY_FORMAT, name));
+        return executor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <RESULT> DefaultRetryExecutor<RESULT> currentExecutor(final String name) {
+        return (DefaultRetryExecutor<RESULT>) current(name);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.simulation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+/**
+ * A {@link FaultModel} describes how the simulated dependency behaves: how likely a single execution is to fail, how
+ * long executions take and during which {@link OutageWindow}s every execution fails.
+ *
+ * @param failureProbability the probability in {@code [0, 1]} of a single execution failing outside of outages
+ * @param latency            the {@link LatencyDistribution} of successful and failed executions alike
+ * @param outages            the {@link OutageWindow}s of the dependency
+ * @author Gabriel Diegel
+ */
+public record FaultModel(double failureProbability, LatencyDistribution latency, List<OutageWindow> outages) {
+
+    /**
+     * Construct a new {@link FaultModel}.
+     *
+     * @param failureProbability the probability in {@code [0, 1]} of a single execution failing outside of outages
+     * @param latency            the {@link LatencyDistribution} of successful and failed executions alike
+     * @param outages            the {@link OutageWindow}s of the dependency
+     */
+    public FaultModel {
+        checkArgument(failureProbability >= 0 && failureProbability <= 1, format("Failure probability: [%s]", failureProbability));
+        checkNotNull(latency, "latency");
+        outages = List.copyOf(outages);
+    }
+
+    /**
+     * @param failureProbability the probability in {@code [0, 1]} of a single execution failing
+     * @param latency            the {@link LatencyDistribution} of executions
+     * @return A {@link FaultModel} without outages
+     */
+    public static FaultModel of(final double failureProbability, final LatencyDistribution latency) {
+        return new FaultModel(failureProbability, latency, List.of());
+    }
+
+    /**
+     * @param start    the start of the outage relative to the start of the simulation
+     * @param duration the duration of the outage
+     * @return A copy of this {@link FaultModel} with the given {@link OutageWindow} added
+     */
+    public FaultModel withOutage(final Duration start, final Duration duration) {
+        final List<OutageWindow> windows = new ArrayList<>(outages);
+        windows.add(new OutageWindow(start, duration));
+        return new FaultModel(failureProbability, latency, windows);
+    }
+
+    boolean fails(final long nanos, final double random) {
+        for (final OutageWindow outage : outages) {
+            if (outage.contains(nanos)) {
+                return true;
+            }
+        }
+        return random < failureProbability;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.simulation;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+/**
+ * A {@link LatencyDistribution} samples the latency of a single simulated execution of the computation.
+ *
+ * @author Gabriel Diegel
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    /**
+     * Sample a latency.
+     *
+     * @param random The source of randomness to use
+     * @return The sampled latency in nanoseconds, never negative
+     */
+    long sample(SplittableRandom random);
+
+    /**
+     * @param latency the latency of every execution
+     * @return A {@link LatencyDistribution} which always returns the given latency
+     */
+    static LatencyDistribution constant(final Duration latency) {
+        final long nanos = nanos(latency);
+        return random -> nanos;
+    }
+
+    /**
+     * @param minimum the inclusive lower bound of the latency
+     * @param maximum the exclusive upper bound of the latency
+     * @return A {@link LatencyDistribution} uniformly distributed between {@code minimum} and {@code maximum}
+     */
+    static LatencyDistribution uniform(final Duration minimum, final Duration maximum) {
+        final long min = nanos(minimum);
+        final long max = nanos(maximum);
+        checkArgument(min < max, format("Minimum: [%s], maximum: [%s]", minimum, maximum));
+        return random -> random.nextLong(min, max);
+    }
+
+    /**
+     * @param mean the mean latency
+     * @return An exponential {@link LatencyDistribution} with the given mean
+     */
+    static LatencyDistribution exponential(final Duration mean) {
+        final long nanos = nanos(mean);
+        return random -> (long) (-Math.log(1.0 - random.nextDouble()) * nanos);
+    }
+
+    /**
+     * A long-tailed distribution typical for remote calls.
+     *
+     * @param median the median latency
+     * @param sigma  the standard deviation of the logarithm of the latency, e.g. 0.5 for a moderate tail
+     * @return A log-normal {@link LatencyDistribution} with the given median
+     */
+    static LatencyDistribution logNormal(final Duration median, final double sigma) {
+        final long nanos = nanos(median);
+        checkArgument(sigma >= 0, format("Sigma: [%s]", sigma));
+        return random -> {
+            // Box-Muller transform
+            final double gaussian = Math.sqrt(-2.0 * Math.log(1.0 - random.nextDouble())) * Math.cos(2.0 * Math.PI * random.nextDouble());
+            return (long) (nanos * Math.exp(sigma * gaussian));
+        };
+    }
+
+    private static long nanos(final Duration duration) {
+        checkNotNull(duration, "duration");
+        checkArgument(!duration.isNegative(), format("Latency: [%s]", duration));
+        return duration.toNanos();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.simulation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * A log-linear histogram of non-negative {@code long} values held in a single primitive array. Values are recorded
+ * with a relative error of less than one percent, regardless of their magnitude, using a fixed amount of memory. Not
+ * thread-safe, histograms recorded concurrently have to be merged.
+ *
+ * @author Gabriel Diegel
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+    private static final int MAXIMUM_SHIFT = Long.SIZE - SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[SUB_BUCKET_COUNT + MAXIMUM_SHIFT * SUB_BUCKET_HALF_COUNT];
+    private long totalCount;
+    private long maximum;
+
+    void record(final long value) {
+        checkArgument(value >= 0, format("Value: [%s]", value));
+        counts[index(value)]++;
+        totalCount++;
+        maximum = Math.max(maximum, value);
+    }
+
+    void merge(final LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        maximum = Math.max(maximum, other.maximum);
+    }
+
+    long totalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @param percentile the percentile in {@code [0, 100]}
+     * @return The highest value equivalent to the value at the given percentile, or zero if nothing was recorded
+     */
+    long valueAtPercentile(final double percentile) {
+        checkArgument(percentile >= 0 && percentile <= 100, format("Percentile: [%s]", percentile));
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return Math.min(highestEquivalentValue(i), maximum);
+            }
+        }
+        return maximum;
+    }
+
+    private static int index(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + subBucket - SUB_BUCKET_HALF_COUNT;
+    }
+
+    private static long highestEquivalentValue(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+        final long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
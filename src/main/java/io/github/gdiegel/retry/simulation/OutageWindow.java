@@ -0,0 +1,49 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.simulation;
+
+import java.time.Duration;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+/**
+ * An {@link OutageWindow} is a period of simulated time, relative to the start of the simulation, during which every
+ * execution of the computation fails.
+ *
+ * @author Gabriel Diegel
+ */
+public record OutageWindow(Duration start, Duration duration) {
+
+    /**
+     * Construct a new {@link OutageWindow}.
+     *
+     * @param start    the start of the outage relative to the start of the simulation
+     * @param duration the duration of the outage
+     */
+    public OutageWindow {
+        checkNotNull(start, "start");
+        checkNotNull(duration, "duration");
+        checkArgument(!start.isNegative(), format("Start: [%s]", start));
+        checkArgument(!duration.isNegative(), format("Duration: [%s]", duration));
+    }
+
+    boolean contains(final long nanos) {
+        final long startNanos = start.toNanos();
+        return nanos >= startNanos && nanos - startNanos < duration.toNanos();
+    }
+}
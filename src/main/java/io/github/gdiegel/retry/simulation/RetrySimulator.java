@@ -0,0 +1,148 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.simulation;
+
+import io.github.gdiegel.retry.exception.RetriesExhaustedException;
+import io.github.gdiegel.retry.exception.RetryException;
+import io.github.gdiegel.retry.executor.DefaultRetryExecutor;
+import io.github.gdiegel.retry.policy.RetryPolicy;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * A {@link RetrySimulator} of {@code RESULT} evaluates a {@link RetryPolicy} of {@code RESULT} against a synthetic
+ * {@link FaultModel} before it is deployed. Every simulated call drives a real {@link DefaultRetryExecutor} on a virtual
+ * clock, so latencies and intervals cost no wall-clock time, and calls are simulated in parallel on all available
+ * cores. Simulations are deterministic for a given seed and parallelism.
+ *
+ * @param <RESULT> the type of the result of the computation
+ * @author Gabriel Diegel
+ */
+public final class RetrySimulator<RESULT> {
+
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    private final RetryPolicy<RESULT> retryPolicy;
+    private final FaultModel faultModel;
+    private final Function<SplittableRandom, RESULT> result;
+    private final Supplier<? extends Exception> failure;
+    private final long calls;
+    private final long horizonNanos;
+    private final long seed;
+    private final int parallelism;
+
+    RetrySimulator(final RetryPolicy<RESULT> retryPolicy, final FaultModel faultModel, final Function<SplittableRandom, RESULT> result,
+                   final Supplier<? extends Exception> failure, final long calls, final Duration horizon, final long seed, final int parallelism) {
+        this.retryPolicy = retryPolicy;
+        this.faultModel = faultModel;
+        this.result = result;
+        this.failure = failure;
+        this.calls = calls;
+        this.horizonNanos = horizon.toNanos();
+        this.seed = seed;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Return a fluent {@link RetrySimulatorBuilder} of {@code RESULT}.
+     *
+     * @param <RESULT> the type of the result of the computation
+     * @return an instance of {@link RetrySimulatorBuilder} of {@code RESULT}
+     */
+    public static <RESULT> RetrySimulatorBuilder<RESULT> builder() {
+        return RetrySimulatorBuilder.instance();
+    }
+
+    /**
+     * Simulate all calls and summarize their outcomes.
+     *
+     * @return A {@link SimulationReport} of the simulated calls
+     */
+    public SimulationReport simulate() {
+        final int chunks = (int) Math.min(calls, (long) parallelism * CHUNKS_PER_THREAD);
+        final SplittableRandom root = new SplittableRandom(seed);
+        final SplittableRandom[] randoms = new SplittableRandom[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            randoms[chunk] = root.split();
+        }
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            final Tally tally = pool.submit(() -> IntStream.range(0, chunks)
+                    .parallel()
+                    .mapToObj(chunk -> simulateChunk(randoms[chunk], calls / chunks + (chunk < calls % chunks ? 1 : 0)))
+                    .reduce(Tally::merge)
+                    .orElseGet(Tally::new)).join();
+            return new SimulationReport(tally);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Tally simulateChunk(final SplittableRandom random, final long chunkCalls) {
+        final Tally tally = new Tally();
+        for (long call = 0; call < chunkCalls; call++) {
+            simulateCall(random, tally);
+        }
+        return tally;
+    }
+
+    private void simulateCall(final SplittableRandom random, final Tally tally) {
+        final VirtualClock clock = new VirtualClock();
+        final SimulatedDependency dependency = new SimulatedDependency(clock, random, horizonNanos == 0 ? 0 : random.nextLong(horizonNanos));
+        Tally.Outcome outcome;
+        try {
+            final Optional<RESULT> computed = new DefaultRetryExecutor<>(retryPolicy, clock, clock).execute(dependency);
+            outcome = computed.isPresent() && retryPolicy.stopCondition().test(computed.get()) ? Tally.Outcome.SUCCEEDED : Tally.Outcome.EXHAUSTED;
+        } catch (final RetriesExhaustedException e) {
+            outcome = Tally.Outcome.EXHAUSTED;
+        } catch (final RetryException e) {
+            outcome = Tally.Outcome.FAILED;
+        }
+        tally.record(outcome, dependency.attempts, clock.read());
+    }
+
+    private final class SimulatedDependency implements Callable<RESULT> {
+
+        private final VirtualClock clock;
+        private final SplittableRandom random;
+        private final long callStart;
+        private int attempts;
+
+        private SimulatedDependency(final VirtualClock clock, final SplittableRandom random, final long callStart) {
+            this.clock = clock;
+            this.random = random;
+            this.callStart = callStart;
+        }
+
+        @Override
+        public RESULT call() throws Exception {
+            attempts++;
+            final long attemptStart = callStart + clock.read();
+            clock.advance(faultModel.latency().sample(random));
+            if (faultModel.fails(attemptStart, random.nextDouble())) {
+                throw failure.get();
+            }
+            return result.apply(random);
+        }
+    }
+}
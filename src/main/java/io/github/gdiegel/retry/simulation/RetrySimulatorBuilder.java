@@ -0,0 +1,189 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.simulation;
+
+import io.github.gdiegel.retry.policy.RetryPolicy;
+import io.github.gdiegel.retry.ratelimit.Pacer;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+/**
+ * Allows fluently building a {@link RetrySimulator} of {@code RESULT} using sensible defaults.
+ *
+ * @param <RESULT> the type of the result of the computation
+ * @author Gabriel Diegel
+ */
+public class RetrySimulatorBuilder<RESULT> {
+
+    private static final String CALLS_FORMAT = "Calls: [%s]";
+    private static final String HORIZON_FORMAT = "Horizon: [%s]";
+    private static final String PARALLELISM_FORMAT = "Parallelism: [%s]";
+    private static final String PACER_FORMAT = "Pacer: [%s], paced policies can't be simulated on a virtual clock";
+
+    /**
+     * Required: The {@link RetryPolicy} under evaluation.
+     */
+    private RetryPolicy<RESULT> retryPolicy;
+
+    /**
+     * Required: Function computing the result of a successful execution.
+     */
+    private Function<SplittableRandom, RESULT> result;
+
+    /**
+     * Default: A dependency which never fails and responds instantly.
+     */
+    private FaultModel faultModel = FaultModel.of(0, LatencyDistribution.constant(Duration.ZERO));
+
+    /**
+     * Default: Failed executions throw a {@link SimulatedFailureException}.
+     */
+    private Supplier<? extends Exception> failure = SimulatedFailureException::new;
+
+    /**
+     * Default: One million simulated calls.
+     */
+    private long calls = 1_000_000;
+
+    /**
+     * Default: All calls start at the beginning of the simulation.
+     */
+    private Duration horizon = Duration.ZERO;
+
+    /**
+     * Default: Seed 0.
+     */
+    private long seed = 0;
+
+    /**
+     * Default: One worker per available processor.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Return a fluent {@link RetrySimulatorBuilder} of {@code RESULT}.
+     *
+     * @param <RESULT> the type of the result of the computation
+     * @return an instance of {@link RetrySimulatorBuilder} of {@code RESULT}
+     */
+    public static <RESULT> RetrySimulatorBuilder<RESULT> instance() {
+        return new RetrySimulatorBuilder<>();
+    }
+
+    /**
+     * @param retryPolicy the {@link RetryPolicy} of {@code RESULT} to evaluate, which must not be paced, as its
+     *                    {@link Pacer} reserves permits on the system clock rather than the virtual one
+     * @return self
+     */
+    public RetrySimulatorBuilder<RESULT> withRetryPolicy(final RetryPolicy<RESULT> retryPolicy) {
+        checkNotNull(retryPolicy, "retryPolicy");
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    /**
+     * @param faultModel the {@link FaultModel} of the simulated dependency
+     * @return self
+     */
+    public RetrySimulatorBuilder<RESULT> withFaultModel(final FaultModel faultModel) {
+        checkNotNull(faultModel, "faultModel");
+        this.faultModel = faultModel;
+        return this;
+    }
+
+    /**
+     * @param result a {@link Function} computing the {@code RESULT} of a successful execution, which is then evaluated
+     *               by the stop condition of the {@link RetryPolicy}
+     * @return self
+     */
+    public RetrySimulatorBuilder<RESULT> withResult(final Function<SplittableRandom, RESULT> result) {
+        checkNotNull(result, "result");
+        this.result = result;
+        return this;
+    }
+
+    /**
+     * @param failure a {@link Supplier} of the {@link Exception} thrown by a failed execution. The ignorable exception
+     *                predicate of the {@link RetryPolicy} has to match it for failed executions to be retried
+     * @return self
+     */
+    public RetrySimulatorBuilder<RESULT> withFailure(final Supplier<? extends Exception> failure) {
+        checkNotNull(failure, "failure");
+        this.failure = failure;
+        return this;
+    }
+
+    /**
+     * @param calls the number of calls to simulate
+     * @return self
+     */
+    public RetrySimulatorBuilder<RESULT> withCalls(final long calls) {
+        checkArgument(calls >= 0, format(CALLS_FORMAT, calls));
+        this.calls = calls;
+        return this;
+    }
+
+    /**
+     * @param horizon a {@link Duration} over which the start of the simulated calls is uniformly distributed, relevant
+     *                in combination with {@link OutageWindow}s
+     * @return self
+     */
+    public RetrySimulatorBuilder<RESULT> withHorizon(final Duration horizon) {
+        checkNotNull(horizon, "horizon");
+        checkArgument(!horizon.isNegative(), format(HORIZON_FORMAT, horizon));
+        this.horizon = horizon;
+        return this;
+    }
+
+    /**
+     * @param seed the seed of the random number generator
+     * @return self
+     */
+    public RetrySimulatorBuilder<RESULT> withSeed(final long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param parallelism the number of workers simulating calls concurrently
+     * @return self
+     */
+    public RetrySimulatorBuilder<RESULT> withParallelism(final int parallelism) {
+        checkArgument(parallelism > 0, format(PARALLELISM_FORMAT, parallelism));
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Build the {@link RetrySimulator} and return it.
+     *
+     * @return An instance of {@link RetrySimulator} of {@code RESULT}
+     * @throws IllegalArgumentException if the {@link RetryPolicy} is paced
+     */
+    public RetrySimulator<RESULT> build() {
+        checkNotNull(retryPolicy, "retryPolicy");
+        checkNotNull(result, "result");
+        checkArgument(retryPolicy.pacer() == Pacer.unpaced(), format(PACER_FORMAT, retryPolicy.pacer()));
+        return new RetrySimulator<>(retryPolicy, faultModel, result, failure, calls, horizon, seed, parallelism);
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.simulation;
+
+/**
+ * A {@link SimulatedFailureException} is thrown by a simulated execution of the computation which failed according to
+ * the {@link FaultModel}. It doesn't capture a stack trace in order to keep simulations cheap.
+ *
+ * @author Gabriel Diegel
+ */
+public class SimulatedFailureException extends RuntimeException {
+
+    /**
+     * Construct a new {@link SimulatedFailureException}
+     */
+    public SimulatedFailureException() {
+        super("Simulated failure", null, false, false);
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.simulation;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static java.lang.String.format;
+
+/**
+ * A {@link SimulationReport} summarizes the outcomes of all calls simulated by a {@link RetrySimulator}.
+ *
+ * @author Gabriel Diegel
+ */
+public final class SimulationReport {
+
+    private final Tally tally;
+
+    SimulationReport(final Tally tally) {
+        this.tally = tally;
+    }
+
+    /**
+     * @return The number of simulated calls
+     */
+    public long calls() {
+        return tally.calls;
+    }
+
+    /**
+     * @return The total number of executions of the computation across all simulated calls
+     */
+    public long attempts() {
+        return tally.attempts;
+    }
+
+    /**
+     * @return The average number of executions the dependency sees per call, i.e. the factor by which retrying
+     * multiplies the load on the dependency
+     */
+    public double loadAmplification() {
+        return ratio(tally.attempts);
+    }
+
+    /**
+     * @return The fraction of calls whose result matched the stop condition
+     */
+    public double successRate() {
+        return ratio(tally.succeeded);
+    }
+
+    /**
+     * @return The fraction of calls which ran into the timeout or the maximum number of executions without a result
+     * matching the stop condition
+     */
+    public double exhaustionRate() {
+        return ratio(tally.exhausted);
+    }
+
+    /**
+     * @return The fraction of calls which were aborted by an exception that is not ignorable
+     */
+    public double failureRate() {
+        return ratio(tally.failed);
+    }
+
+    /**
+     * @return The number of calls by the number of executions they needed, in ascending order of executions
+     */
+    public SortedMap<Integer, Long> attemptDistribution() {
+        final SortedMap<Integer, Long> distribution = new TreeMap<>();
+        for (int attempts = 0; attempts < tally.attemptCounts.length; attempts++) {
+            if (tally.attemptCounts[attempts] > 0) {
+                distribution.put(attempts, tally.attemptCounts[attempts]);
+            }
+        }
+        return Collections.unmodifiableSortedMap(distribution);
+    }
+
+    /**
+     * @param percentile the percentile in {@code [0, 100]}, e.g. 99.9
+     * @return The end-to-end latency of a call, including all executions and intervals, at the given percentile
+     */
+    public Duration latencyPercentile(final double percentile) {
+        return Duration.ofNanos(tally.latencies.valueAtPercentile(percentile));
+    }
+
+    private double ratio(final long count) {
+        return tally.calls == 0 ? 0 : (double) count / tally.calls;
+    }
+
+    @Override
+    public String toString() {
+        return format("SimulationReport[calls=%d, attempts=%d, loadAmplification=%.3f, successRate=%.4f, exhaustionRate=%.4f, "
+                        + "failureRate=%.4f, p50=%s, p99=%s, p999=%s]", calls(), attempts(), loadAmplification(), successRate(),
+                exhaustionRate(), failureRate(), latencyPercentile(50), latencyPercentile(99), latencyPercentile(99.9));
+    }
+}
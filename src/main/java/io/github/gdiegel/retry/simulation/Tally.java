@@ -0,0 +1,68 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Mutable accumulator of the outcomes of simulated calls. Each worker records into its own {@link Tally}, the partial
+ * tallies are merged once all calls have been simulated.
+ *
+ * @author Gabriel Diegel
+ */
+final class Tally {
+
+    enum Outcome {SUCCEEDED, EXHAUSTED, FAILED}
+
+    final LatencyHistogram latencies = new LatencyHistogram();
+    long[] attemptCounts = new long[16];
+    long calls;
+    long attempts;
+    long succeeded;
+    long exhausted;
+    long failed;
+
+    void record(final Outcome outcome, final int attempts, final long latencyNanos) {
+        calls++;
+        this.attempts += attempts;
+        switch (outcome) {
+            case SUCCEEDED -> succeeded++;
+            case EXHAUSTED -> exhausted++;
+            case FAILED -> failed++;
+        }
+        if (attempts >= attemptCounts.length) {
+            attemptCounts = Arrays.copyOf(attemptCounts, Math.max(attempts + 1, attemptCounts.length << 1));
+        }
+        attemptCounts[attempts]++;
+        latencies.record(latencyNanos);
+    }
+
+    Tally merge(final Tally other) {
+        calls += other.calls;
+        attempts += other.attempts;
+        succeeded += other.succeeded;
+        exhausted += other.exhausted;
+        failed += other.failed;
+        if (other.attemptCounts.length > attemptCounts.length) {
+            attemptCounts = Arrays.copyOf(attemptCounts, other.attemptCounts.length);
+        }
+        for (int i = 0; i < other.attemptCounts.length; i++) {
+            attemptCounts[i] += other.attemptCounts[i];
+        }
+        latencies.merge(other.latencies);
+        return this;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.simulation;
+
+import com.google.common.base.Ticker;
+import io.github.gdiegel.retry.executor.Sleeper;
+
+import java.time.Duration;
+
+/**
+ * A {@link VirtualClock} is a {@link Ticker} whose time only advances when it is told to, either explicitly or by
+ * sleeping on it. Not thread-safe, every simulated call uses its own instance.
+ *
+ * @author Gabriel Diegel
+ */
+final class VirtualClock extends Ticker implements Sleeper {
+
+    private long nanos;
+
+    @Override
+    public long read() {
+        return nanos;
+    }
+
+    @Override
+    public void sleep(final Duration duration) {
+        advance(duration.toNanos());
+    }
+
+    void advance(final long nanos) {
+        this.nanos += nanos;
+    }
+}
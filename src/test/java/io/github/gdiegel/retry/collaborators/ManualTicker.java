@@ -0,0 +1,18 @@
+package io.github.gdiegel.retry.collaborators;
+
+import com.google.common.base.Ticker;
+
+import java.time.Duration;
+
+public class ManualTicker extends Ticker {
+    private long nanos = 0;
+
+    @Override
+    public synchronized long read() {
+        return nanos;
+    }
+
+    public synchronized void advance(final Duration duration) {
+        nanos += duration.toNanos();
+    }
+}
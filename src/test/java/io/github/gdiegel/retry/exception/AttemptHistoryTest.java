@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.exception;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AttemptHistoryTest {
+
+    @Test
+    void shouldRetainMostRecentExecutionsOnly() {
+        final AttemptHistory history = new AttemptHistory(3, 2);
+        for (int attempt = 0; attempt < 10; attempt++) {
+            history.record(attempt * 100L, attempt, attempt % 2 == 0 ? new IllegalStateException(String.valueOf(attempt)) : null);
+        }
+        assertThat(history.attempts()).isEqualTo(10);
+        assertThat(history.size()).isEqualTo(3);
+        assertThat(history.startOffset(0)).isEqualTo(Duration.ofNanos(700));
+        assertThat(history.duration(2)).isEqualTo(Duration.ofNanos(9));
+        assertThat(history.exceptionClass(0)).isNull();
+        assertThat(history.exceptionClass(1)).isEqualTo(IllegalStateException.class);
+        assertThat(history.causes()).extracting(Throwable::getMessage).containsExactly("6", "8");
+        assertThatThrownBy(() -> history.duration(3)).isExactlyInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void shouldAttachRetainedCausesAsSuppressedExceptions() {
+        final AttemptHistory history = new AttemptHistory();
+        final IllegalStateException first = new IllegalStateException("first");
+        final IllegalArgumentException last = new IllegalArgumentException("last");
+        history.record(0, 1, first);
+        history.record(2, 1, last);
+        assertThat(new RetriesExhaustedException("Exhausted", history))
+                .hasMessage("Exhausted after 2 executions")
+                .satisfies(e -> assertThat(e.getSuppressed()).containsExactly(first, last))
+                .satisfies(e -> assertThat(e.getAttemptHistory()).containsSame(history));
+        assertThat(new RetryException(last, history))
+                .hasCause(last)
+                .satisfies(e -> assertThat(e.getSuppressed()).containsExactly(first));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.executor;
+
+import io.github.gdiegel.retry.exception.RetriesExhaustedException;
+import io.github.gdiegel.retry.exception.RetryException;
+import io.github.gdiegel.retry.policy.RetryPolicy;
+import io.github.gdiegel.retry.policy.RetryPolicyBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchingRetryExecutorTest {
+
+    private static final RetryPolicy<Integer> RETRY_POLICY = RetryPolicy.<Integer>builder()
+            .withInterval(Duration.ofMillis(5))
+            .withMaximumExecutions(10)
+            .ignoreWhen(e -> e instanceof IllegalStateException)
+            .retryUntil(polls -> polls >= 3)
+            .build();
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void shouldOnlyPollPendingKeys() {
+        final List<Set<String>> polled = new CopyOnWriteArrayList<>();
+        final Map<String, AtomicInteger> polls = new ConcurrentHashMap<>();
+        final Function<Set<String>, Map<String, Integer>> bulk = keys -> {
+            polled.add(keys);
+            // "fast" resolves on its first poll, "slow" on its third
+            return keys.stream().collect(Collectors.toMap(Function.identity(),
+                    key -> key.equals("fast") ? 3 : polls.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet()));
+        };
+        final Map<String, CompletableFuture<Optional<Integer>>> futures = new BatchingRetryExecutor<String, Integer>(RETRY_POLICY, scheduler)
+                .execute(Set.of("fast", "slow"), bulk);
+        assertThat(futures.get("fast").join()).contains(3);
+        assertThat(futures.get("slow").join()).contains(3);
+        assertThat(polled).containsExactly(Set.of("fast", "slow"), Set.of("slow"), Set.of("slow"));
+    }
+
+    @Test
+    void shouldSplitKeysIntoBatches() {
+        final List<Set<Integer>> polled = new CopyOnWriteArrayList<>();
+        final Map<Integer, CompletableFuture<Optional<Integer>>> futures = new BatchingRetryExecutor<Integer, Integer>(RETRY_POLICY, scheduler, 2)
+                .execute(Set.of(1, 2, 3, 4, 5), keys -> {
+                    polled.add(keys);
+                    return keys.stream().collect(Collectors.toMap(Function.identity(), key -> 3));
+                });
+        CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).join();
+        assertThat(polled).hasSize(3).allSatisfy(keys -> assertThat(keys).hasSizeLessThanOrEqualTo(2));
+    }
+
+    @Test
+    void shouldCompleteWithLastResultWhenExhausted() {
+        final RetryPolicy<Integer> retryPolicy = RetryPolicy.<Integer>builder()
+                .withInterval(Duration.ZERO)
+                .withMaximumExecutions(2)
+                .retryUntil(result -> false)
+                .build();
+        final Map<String, CompletableFuture<Optional<Integer>>> futures = new BatchingRetryExecutor<String, Integer>(retryPolicy, scheduler)
+                .execute(Set.of("job", "missing"), keys -> Map.of("job", 1));
+        assertThat(futures.get("job").join()).contains(1);
+        assertThat(futures.get("missing").join()).isEmpty();
+    }
+
+    @Test
+    void shouldCompleteExceptionallyWhenExhaustedAndThrowing() {
+        final RetryPolicy<Integer> retryPolicy = RetryPolicy.<Integer>builder()
+                .withInterval(Duration.ZERO)
+                .withMaximumExecutions(2)
+                .throwing(true)
+                .build();
+        final CompletableFuture<Optional<Integer>> future = new BatchingRetryExecutor<String, Integer>(retryPolicy, scheduler)
+                .execute(Set.of("job"), keys -> Map.of("job", 1)).get("job");
+        assertThatThrownBy(future::get).isExactlyInstanceOf(ExecutionException.class).hasCauseExactlyInstanceOf(RetriesExhaustedException.class);
+    }
+
+    @Test
+    void shouldRetryIgnorableAndFailOnNonIgnorableException() {
+        final AtomicInteger calls = new AtomicInteger();
+        final CompletableFuture<Optional<Integer>> future = new BatchingRetryExecutor<String, Integer>(RETRY_POLICY, scheduler)
+                .execute(Set.of("job"), keys -> {
+                    if (calls.incrementAndGet() == 1) {
+                        throw new IllegalStateException("Pow!");
+                    }
+                    throw new IllegalArgumentException("Boom!");
+                }).get("job");
+        assertThatThrownBy(future::get).isExactlyInstanceOf(ExecutionException.class)
+                .getCause().isExactlyInstanceOf(RetryException.class).hasCauseExactlyInstanceOf(IllegalArgumentException.class);
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void shouldHonourLongestDelaySuggestedForPendingKeys() {
+        final RetryPolicy<Integer> retryPolicy = RetryPolicyBuilder.from(RETRY_POLICY)
+                .withTimeout(Duration.ofSeconds(15))
+                .withResultDelayHint(polls -> Optional.of(Duration.ofSeconds(polls * 10L)))
+                .build();
+        final AtomicInteger rounds = new AtomicInteger();
+        final Map<String, CompletableFuture<Optional<Integer>>> futures = new BatchingRetryExecutor<String, Integer>(retryPolicy, scheduler)
+                .execute(Set.of("a", "b"), keys -> {
+                    rounds.incrementAndGet();
+                    return Map.of("a", 1, "b", 2);
+                });
+        // "a" would fit into the timeout, "b" wouldn't
+        assertThat(futures.get("a").join()).contains(1);
+        assertThat(futures.get("b").join()).contains(2);
+        assertThat(rounds).hasValue(1);
+    }
+}
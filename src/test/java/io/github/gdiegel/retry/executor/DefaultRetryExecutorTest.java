@@ -1,16 +1,26 @@
 package io.github.gdiegel.retry.executor;
 
+import com.google.common.base.Ticker;
 import io.github.gdiegel.retry.BaseTest;
 import io.github.gdiegel.retry.collaborators.InvocationCounter;
+import io.github.gdiegel.retry.collaborators.ManualTicker;
+import io.github.gdiegel.retry.collaborators.StringProvider;
+import io.github.gdiegel.retry.collaborators.ThrowImmediately;
+import io.github.gdiegel.retry.exception.AttemptHistory;
+import io.github.gdiegel.retry.exception.RetriesExhaustedException;
+import io.github.gdiegel.retry.exception.RetryAfterException;
 import io.github.gdiegel.retry.policy.RetryPolicy;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class DefaultRetryExecutorTest extends BaseTest {
 
@@ -31,4 +41,180 @@ class DefaultRetryExecutorTest extends BaseTest {
         final Optional<Long> result = retryExecutor.execute(invocationCounter::invoke);
         assertThat(result).hasValueSatisfying(invocations -> assertThat(invocations).isPositive());
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldWaitForPacerBeforeEveryExecution() {
+        final List<Duration> sleeps = new ArrayList<>();
+        final RetryPolicy<Integer> retryPolicy = RetryPolicy.<Integer>builder()
+                .withInterval(Duration.ZERO)
+                .withMaximumExecutions(3)
+                .withPacer(() -> Duration.ofMillis(5))
+                .build();
+        final DefaultRetryExecutor<Integer> retryExecutor = new DefaultRetryExecutor<>(retryPolicy, Ticker.systemTicker(), sleeps::add);
+        retryExecutor.execute(IDEMPOTENT_CALLABLE);
+        assertThat(sleeps).containsExactly(Duration.ofMillis(5), Duration.ofMillis(5), Duration.ofMillis(5));
+    }
+
+    @Test
+    void shouldExhaustInsteadOfWaitingForPacerBeyondTimeout() {
+        final List<Duration> sleeps = new ArrayList<>();
+        final RetryPolicy<Integer> retryPolicy = RetryPolicy.<Integer>builder()
+                .withInterval(Duration.ZERO)
+                .withTimeout(Duration.ofSeconds(10))
+                .withPacer(() -> Duration.ofMinutes(1))
+                .throwing(true)
+                .build();
+        final DefaultRetryExecutor<Integer> retryExecutor = new DefaultRetryExecutor<>(retryPolicy, new ManualTicker(), sleeps::add);
+        assertThatThrownBy(() -> retryExecutor.execute(IDEMPOTENT_CALLABLE))
+                .isExactlyInstanceOf(RetriesExhaustedException.class)
+                .hasMessage("Retries or executions exhausted after 0 executions");
+        assertThat(sleeps).isEmpty();
+    }
+
+    @Test
+    void shouldBeReusableAcrossComputations() {
+        final RetryPolicy<Long> retryPolicy = RetryPolicy.<Long>builder().withInterval(Duration.ZERO).withMaximumExecutions(3).build();
+        final DefaultRetryExecutor<Long> retryExecutor = new DefaultRetryExecutor<>(retryPolicy);
+        assertThat(retryExecutor.execute(new InvocationCounter()::invoke)).contains(3L);
+        assertThat(retryExecutor.execute(new InvocationCounter()::invoke)).contains(3L);
+        assertThat(retryExecutor.getCurrentExecutions()).isEqualTo(6);
+    }
+
+    @Test
+    void shouldAttachAttemptHistoryWhenExhausted() {
+        final RetryPolicy<String> retryPolicy = RetryPolicy.<String>builder()
+                .withInterval(Duration.ZERO)
+                .withMaximumExecutions(100)
+                .ignoreWhen(e -> e.getClass() == RuntimeException.class)
+                .throwing(true)
+                .build();
+        final ThrowImmediately throwImmediately = new ThrowImmediately();
+        assertThatThrownBy(() -> new DefaultRetryExecutor<>(retryPolicy).execute(throwImmediately::invoke))
+                .isExactlyInstanceOf(RetriesExhaustedException.class)
+                .hasMessage("Retries or executions exhausted after 100 executions")
+                .satisfies(e -> assertThat(e.getSuppressed()).hasSize(AttemptHistory.DEFAULT_RETAINED_CAUSES))
+                .extracting(e -> ((RetriesExhaustedException) e).getAttemptHistory().orElseThrow())
+                .satisfies(history -> {
+                    assertThat(history.attempts()).isEqualTo(100);
+                    assertThat(history.size()).isEqualTo(AttemptHistory.DEFAULT_CAPACITY);
+                    assertThat(history.exceptionClass(0)).isEqualTo(RuntimeException.class);
+                });
+    }
+
+    @Test
+    void shouldOnlyFetchAndEvaluateStopConditionWhenProbeIsReady() {
+        final InvocationCounter probes = new InvocationCounter();
+        final InvocationCounter fetches = new InvocationCounter();
+        final InvocationCounter evaluations = new InvocationCounter();
+        final RetryPolicy<Long> retryPolicy = RetryPolicy.<Long>builder()
+                .withInterval(Duration.ZERO)
+                .retryUntil(fetched -> evaluations.invoke() > 0)
+                .build();
+        final Optional<Long> result = new DefaultRetryExecutor<>(retryPolicy).execute(probes::invoke, probe -> probe >= 5, fetches::invoke);
+        assertThat(result).contains(1L);
+        assertThat(probes.getInvocations()).isEqualTo(5);
+        assertThat(fetches.getInvocations()).isEqualTo(1);
+        assertThat(evaluations.getInvocations()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotApplyResultDelayHintToSkippedFetches() {
+        final List<Duration> sleeps = new ArrayList<>();
+        final InvocationCounter probes = new InvocationCounter();
+        final RetryPolicy<String> retryPolicy = RetryPolicy.<String>builder()
+                .withInterval(Duration.ofMillis(10))
+                .withMaximumExecutions(4)
+                .retryUntil("200"::equals)
+                .withResultDelayHint(status -> status.equals("503") ? Optional.of(Duration.ofSeconds(5)) : Optional.empty())
+                .build();
+        final DefaultRetryExecutor<String> retryExecutor = new DefaultRetryExecutor<>(retryPolicy, Ticker.systemTicker(), sleeps::add);
+        retryExecutor.execute(probes::invoke, probe -> probe == 1, () -> "503");
+        assertThat(sleeps).containsExactly(Duration.ofSeconds(5), Duration.ofMillis(10), Duration.ofMillis(10));
+    }
+
+    @Test
+    void shouldFetchOnlyWhenProbeChanges() {
+        final StringProvider versions = new StringProvider();
+        final InvocationCounter fetches = new InvocationCounter();
+        final RetryPolicy<Long> retryPolicy = RetryPolicy.<Long>builder()
+                .withInterval(Duration.ZERO)
+                .withMaximumExecutions(6)
+                .build();
+        final Optional<Long> result = new DefaultRetryExecutor<>(retryPolicy)
+                .executeOnChange(() -> versions.getNextChar() < 'c' ? "v1" : "v2", fetches::invoke);
+        assertThat(result).contains(2L);
+        assertThat(fetches.getInvocations()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldHonourSuggestedDelaysWithinIntervalBounds() {
+        final List<Duration> sleeps = new ArrayList<>();
+        final InvocationCounter invocationCounter = new InvocationCounter();
+        final RetryPolicy<Long> retryPolicy = RetryPolicy.<Long>builder()
+                .withInterval(Duration.ofMillis(10))
+                .withMaximumExecutions(4)
+                .ignoreWhen(RetryAfterException.class::isInstance)
+                .withResultDelayHint(invocations -> invocations == 2 ? Optional.of(Duration.ofMillis(1)) : Optional.empty())
+                .withIntervalBounds(Duration.ofMillis(5), Duration.ofSeconds(1))
+                .build();
+        final DefaultRetryExecutor<Long> retryExecutor = new DefaultRetryExecutor<>(retryPolicy, Ticker.systemTicker(), sleeps::add);
+        final Optional<Long> result = retryExecutor.execute(() -> {
+            final long invocations = invocationCounter.invoke();
+            if (invocations == 1) {
+                throw new RetryAfterException(Duration.ofMinutes(1));
+            }
+            return invocations;
+        });
+        assertThat(result).contains(4L);
+        assertThat(sleeps).containsExactly(Duration.ofSeconds(1), Duration.ofMillis(5), Duration.ofMillis(10));
+    }
+
+    @Test
+    void shouldNotWaitAfterResultMatchingStopCondition() {
+        final List<Duration> sleeps = new ArrayList<>();
+        final RetryPolicy<String> retryPolicy = RetryPolicy.<String>builder()
+                .retryUntil("200"::equals)
+                .withResultDelayHint(status -> Optional.of(Duration.ofSeconds(5)))
+                .build();
+        final DefaultRetryExecutor<String> retryExecutor = new DefaultRetryExecutor<>(retryPolicy, Ticker.systemTicker(), sleeps::add);
+        assertThat(retryExecutor.execute(() -> "200")).contains("200");
+        assertThat(sleeps).isEmpty();
+    }
+
+    @Test
+    void shouldFallBackToIntervalWhenDelayHintThrows() {
+        final List<Duration> sleeps = new ArrayList<>();
+        final RetryPolicy<String> retryPolicy = RetryPolicy.<String>builder()
+                .withInterval(Duration.ofMillis(10))
+                .withMaximumExecutions(2)
+                .withResultDelayHint(retryAfter -> Optional.of(Duration.ofSeconds(Long.parseLong(retryAfter))))
+                .build();
+        final DefaultRetryExecutor<String> retryExecutor = new DefaultRetryExecutor<>(retryPolicy, Ticker.systemTicker(), sleeps::add);
+        assertThat(retryExecutor.execute(() -> "Wed, 21 Oct 2015 07:28:00 GMT")).contains("Wed, 21 Oct 2015 07:28:00 GMT");
+        assertThat(sleeps).containsExactly(Duration.ofMillis(10));
+        assertThat(retryExecutor.getCurrentExecutions()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldExhaustInsteadOfWaitingBeyondTimeout() {
+        final ManualTicker ticker = new ManualTicker();
+        final List<Duration> sleeps = new ArrayList<>();
+        final RetryPolicy<Long> retryPolicy = RetryPolicy.<Long>builder()
+                .withInterval(Duration.ofSeconds(1))
+                .withTimeout(Duration.ofSeconds(30))
+                .ignoreWhen(RetryAfterException.class::isInstance)
+                .throwing(true)
+                .build();
+        final DefaultRetryExecutor<Long> retryExecutor = new DefaultRetryExecutor<>(retryPolicy, ticker, duration -> {
+            sleeps.add(duration);
+            ticker.advance(duration);
+        });
+        final InvocationCounter invocationCounter = new InvocationCounter();
+        assertThatThrownBy(() -> retryExecutor.execute(() -> {
+            throw new RetryAfterException(Duration.ofSeconds(invocationCounter.invoke() * 10));
+        }))
+                .isExactlyInstanceOf(RetriesExhaustedException.class)
+                .hasMessage("Retries or executions exhausted after 3 executions");
+        assertThat(sleeps).containsExactly(Duration.ofSeconds(10), Duration.ofSeconds(20));
+    }
+}
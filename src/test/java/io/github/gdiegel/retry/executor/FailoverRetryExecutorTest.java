@@ -0,0 +1,144 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.executor;
+
+import io.github.gdiegel.retry.collaborators.ManualTicker;
+import io.github.gdiegel.retry.policy.RetryPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FailoverRetryExecutorTest {
+
+    private static final RetryPolicy<String> RETRY_POLICY = RetryPolicy.<String>builder()
+            .withInterval(Duration.ZERO)
+            .withMaximumExecutions(3)
+            .ignoreWhen(e -> e instanceof IllegalStateException)
+            .retryUntil(result -> true)
+            .build();
+
+    private final ManualTicker ticker = new ManualTicker();
+
+    @Test
+    void shouldPreferAlternativeWithLowerLatency() {
+        final FailoverRetryExecutor<String> executor = new FailoverRetryExecutor<>(RETRY_POLICY,
+                List.of(respondAfter("slow", Duration.ofMillis(50)), respondAfter("fast", Duration.ofMillis(10))), ticker, duration -> {
+        });
+        assertThat(executor.execute()).contains("slow");
+        assertThat(executor.execute()).contains("fast");
+        assertThat(executor.execute()).contains("fast");
+        assertThat(executor.latency(0)).isEqualTo(Duration.ofMillis(50));
+        assertThat(executor.latency(1)).isEqualTo(Duration.ofMillis(10));
+    }
+
+    @Test
+    void shouldFailOverToNextAlternativeOnIgnorableException() {
+        final Callable<String> broken = () -> {
+            ticker.advance(Duration.ofMillis(10));
+            throw new IllegalStateException("Pow!");
+        };
+        final FailoverRetryExecutor<String> executor = new FailoverRetryExecutor<>(RETRY_POLICY,
+                List.of(broken, respondAfter("replica", Duration.ofMillis(10))), ticker, duration -> {
+        });
+        assertThat(executor.execute()).contains("replica");
+        assertThat(executor.successRate(0)).isLessThan(1.0);
+        assertThat(executor.successRate(1)).isEqualTo(1.0);
+        assertThat(executor.execute()).contains("replica");
+    }
+
+    @Test
+    void shouldAvoidAlternativeWhichFailsFast() {
+        final int[] brokenCalls = new int[1];
+        final Callable<String> connectionRefused = () -> {
+            brokenCalls[0]++;
+            ticker.advance(Duration.ofNanos(40_000));
+            throw new IllegalStateException("Connection refused");
+        };
+        final FailoverRetryExecutor<String> executor = new FailoverRetryExecutor<>(RETRY_POLICY,
+                List.of(connectionRefused, respondAfter("replica", Duration.ofMillis(20))), ticker, duration -> {
+        });
+        // 200 computations of 20 ms each, so the broken alternative is probed about once a second
+        for (int computation = 0; computation < 200; computation++) {
+            assertThat(executor.execute()).contains("replica");
+        }
+        assertThat(brokenCalls[0]).isBetween(2, 5);
+        assertThat(executor.latency(0)).isZero();
+    }
+
+    @Test
+    void shouldReturnTrafficToRecoveredAlternative() {
+        final boolean[] broken = {true};
+        final Callable<String> primary = () -> {
+            ticker.advance(Duration.ofMillis(10));
+            if (broken[0]) {
+                throw new IllegalStateException("Connection refused");
+            }
+            return "primary";
+        };
+        final FailoverRetryExecutor<String> executor = new FailoverRetryExecutor<>(RETRY_POLICY,
+                List.of(primary, respondAfter("replica", Duration.ofMillis(20))), ticker, duration -> {
+        });
+        for (int computation = 0; computation < 20; computation++) {
+            assertThat(executor.execute()).contains("replica");
+        }
+        broken[0] = false;
+        for (int computation = 0; computation < 60; computation++) {
+            executor.execute();
+        }
+        for (int computation = 0; computation < 20; computation++) {
+            assertThat(executor.execute()).contains("primary");
+        }
+        assertThat(executor.latency(0)).isEqualTo(Duration.ofMillis(10));
+    }
+
+    @Test
+    void shouldCycleThroughAlternativesWhenAllFail() {
+        final RetryPolicy<String> retryPolicy = RetryPolicy.<String>builder()
+                .withInterval(Duration.ZERO)
+                .withMaximumExecutions(5)
+                .ignoreWhen(e -> e instanceof IllegalStateException)
+                .build();
+        final int[] calls = new int[2];
+        final FailoverRetryExecutor<String> executor = new FailoverRetryExecutor<>(retryPolicy, List.of(() -> {
+            calls[0]++;
+            throw new IllegalStateException();
+        }, () -> {
+            calls[1]++;
+            throw new IllegalStateException();
+        }), ticker, duration -> {
+        });
+        assertThat(executor.execute()).isEmpty();
+        assertThat(calls[0] + calls[1]).isEqualTo(5);
+        assertThat(calls[1]).isPositive();
+    }
+
+    @Test
+    void shouldRequireAlternatives() {
+        assertThatThrownBy(() -> new FailoverRetryExecutor<>(RETRY_POLICY, List.of())).isExactlyInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Callable<String> respondAfter(final String result, final Duration latency) {
+        return () -> {
+            ticker.advance(latency);
+            return result;
+        };
+    }
+}
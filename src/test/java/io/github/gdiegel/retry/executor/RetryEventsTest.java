@@ -0,0 +1,96 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.executor;
+
+import io.github.gdiegel.retry.collaborators.ThrowOnceThenSucceed;
+import io.github.gdiegel.retry.exception.RetryException;
+import io.github.gdiegel.retry.policy.RetryPolicy;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetryEventsTest {
+
+    private static final String ATTEMPT = "io.github.gdiegel.retry.Attempt";
+    private static final String WAIT = "io.github.gdiegel.retry.Wait";
+    private static final String EXECUTION = "io.github.gdiegel.retry.Execution";
+
+    @Test
+    void shouldEmitEventsForAttemptsWaitsAndExecution(@TempDir final Path directory) throws IOException {
+        final ThrowOnceThenSucceed tots = new ThrowOnceThenSucceed();
+        final RetryPolicy<String> retryPolicy = RetryPolicy.<String>builder()
+                .withInterval(Duration.ofMillis(1))
+                .withMaximumExecutions(2)
+                .ignoreWhen(e -> e.getClass() == RuntimeException.class)
+                .build();
+        final List<RecordedEvent> events = record(directory, () -> new DefaultRetryExecutor<>(retryPolicy).execute(tots::invoke));
+
+        final List<RecordedEvent> attempts = ofType(events, ATTEMPT);
+        assertThat(attempts).extracting(event -> event.getLong("attempt")).containsExactly(1L, 2L);
+        assertThat(attempts).extracting(event -> event.getString("outcome")).containsExactly("IGNORED", "SUCCEEDED");
+        assertThat(attempts.get(0).getClass("exceptionClass").getName()).isEqualTo(RuntimeException.class.getName());
+
+        final List<RecordedEvent> waits = ofType(events, WAIT);
+        assertThat(waits).singleElement().satisfies(event -> {
+            assertThat(event.getDuration("requested")).isEqualTo(Duration.ofMillis(1));
+            assertThat(event.getDuration()).isGreaterThanOrEqualTo(Duration.ofMillis(1));
+        });
+
+        final List<RecordedEvent> executions = ofType(events, EXECUTION);
+        assertThat(executions).hasSize(1);
+        assertThat(executions.get(0).getLong("attempts")).isEqualTo(2);
+        assertThat(executions.get(0).getBoolean("exhausted")).isTrue();
+    }
+
+    @Test
+    void shouldEmitEventsWhenComputationFails(@TempDir final Path directory) throws IOException {
+        final RetryPolicy<Integer> retryPolicy = RetryPolicy.<Integer>builder().withInterval(Duration.ZERO).build();
+        final List<RecordedEvent> events = record(directory, () -> assertThatThrownBy(() -> new DefaultRetryExecutor<>(retryPolicy).execute(() -> {
+            throw new IllegalStateException();
+        })).isExactlyInstanceOf(RetryException.class));
+
+        assertThat(ofType(events, ATTEMPT)).singleElement().satisfies(event -> assertThat(event.getString("outcome")).isEqualTo("FAILED"));
+        assertThat(ofType(events, EXECUTION)).singleElement().satisfies(event -> assertThat(event.getBoolean("exhausted")).isFalse());
+    }
+
+    private static List<RecordedEvent> record(final Path directory, final Runnable runnable) throws IOException {
+        final Path file = directory.resolve("retry.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(ATTEMPT).withoutThreshold();
+            recording.enable(WAIT).withoutThreshold();
+            recording.enable(EXECUTION).withoutThreshold();
+            recording.start();
+            runnable.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static List<RecordedEvent> ofType(final List<RecordedEvent> events, final String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).toList();
+    }
+}
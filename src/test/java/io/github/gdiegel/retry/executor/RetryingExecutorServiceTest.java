@@ -0,0 +1,225 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.executor;
+
+import io.github.gdiegel.retry.exception.RetriesExhaustedException;
+import io.github.gdiegel.retry.exception.RetryException;
+import io.github.gdiegel.retry.policy.RetryPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetryingExecutorServiceTest {
+
+    private static final RetryPolicy<Object> RETRY_POLICY = RetryPolicy.builder()
+            .withInterval(Duration.ofMillis(10))
+            .withMaximumExecutions(5)
+            .ignoreWhen(e -> e instanceof IllegalStateException)
+            .retryUntil(result -> true)
+            .throwing(true)
+            .build();
+
+    private final RetryingExecutorService executorService = new RetryingExecutorService(Executors.newSingleThreadExecutor(), RETRY_POLICY);
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    void shouldRetryTaskUntilItSucceeds() throws Exception {
+        final AtomicInteger executions = new AtomicInteger();
+        final Future<Integer> future = executorService.submit(() -> {
+            if (executions.incrementAndGet() < 3) {
+                throw new IllegalStateException("Pow!");
+            }
+            return executions.get();
+        });
+        assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo(3);
+    }
+
+    @Test
+    void shouldFreeWorkerBetweenExecutions() throws Exception {
+        final RetryPolicy<Object> retryPolicy = RetryPolicy.builder()
+                .withInterval(Duration.ofSeconds(1))
+                .withMaximumExecutions(2)
+                .ignoreWhen(e -> e instanceof IllegalStateException)
+                .retryUntil(result -> true)
+                .build();
+        final RetryingExecutorService slowRetries = new RetryingExecutorService(Executors.newSingleThreadExecutor(), retryPolicy);
+        try {
+            final Future<Object> failing = slowRetries.submit(() -> {
+                throw new IllegalStateException("Pow!");
+            });
+            final Future<String> succeeding = slowRetries.submit(() -> "Yippie!");
+            assertThat(succeeding.get(500, TimeUnit.MILLISECONDS)).isEqualTo("Yippie!");
+            assertThat(failing).isNotDone();
+        } finally {
+            slowRetries.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldRetryUntilResultMeetsStopCondition() throws Exception {
+        final RetryPolicy<Object> retryPolicy = RetryPolicy.builder()
+                .withInterval(Duration.ofMillis(10))
+                .retryUntil("ready"::equals)
+                .withResultDelayHint(result -> "pending".equals(result) ? Optional.of(Duration.ofMillis(200)) : Optional.empty())
+                .build();
+        final RetryingExecutorService polling = new RetryingExecutorService(Executors.newSingleThreadExecutor(), retryPolicy);
+        try {
+            final AtomicInteger executions = new AtomicInteger();
+            final long start = System.nanoTime();
+            final Future<String> future = polling.submit(() -> executions.incrementAndGet() < 3 ? "pending" : "ready");
+            assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("ready");
+            assertThat(executions).hasValue(3);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(400));
+        } finally {
+            polling.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldCompleteWithLastResultWhenExhaustedAndNotThrowing() throws Exception {
+        final RetryPolicy<Object> retryPolicy = RetryPolicy.builder()
+                .withInterval(Duration.ofMillis(10))
+                .withMaximumExecutions(3)
+                .retryUntil(result -> false)
+                .build();
+        final RetryingExecutorService polling = new RetryingExecutorService(Executors.newSingleThreadExecutor(), retryPolicy);
+        try {
+            final AtomicInteger executions = new AtomicInteger();
+            assertThat(polling.submit(executions::incrementAndGet).get(5, TimeUnit.SECONDS)).isEqualTo(3);
+            assertThat(polling.submit(() -> {
+            }).get(5, TimeUnit.SECONDS)).isNull();
+            assertThat(executions).hasValue(3);
+        } finally {
+            polling.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldRunDueExecutionWithEarliestDeadlineFirst() throws Exception {
+        final RetryPolicy<Object> retryPolicy = RetryPolicy.builder()
+                .withInterval(Duration.ofMillis(300))
+                .ignoreWhen(e -> e instanceof IllegalStateException)
+                .retryUntil(result -> true)
+                .build();
+        final RetryingExecutorService scarce = new RetryingExecutorService(Executors.newSingleThreadExecutor(), retryPolicy, 1);
+        try {
+            final List<String> order = new CopyOnWriteArrayList<>();
+            final CountDownLatch failed = new CountDownLatch(1);
+            final Future<String> retried = scarce.submit(() -> {
+                if (failed.getCount() > 0) {
+                    failed.countDown();
+                    throw new IllegalStateException("Pow!");
+                }
+                order.add("retried");
+                return "retried";
+            });
+            assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+            final CountDownLatch release = new CountDownLatch(1);
+            final Future<Boolean> blocker = scarce.submit(() -> release.await(5, TimeUnit.SECONDS));
+            final Future<String> first = scarce.submit(() -> {
+                order.add("first");
+                return "first";
+            });
+            final Future<String> second = scarce.submit(() -> {
+                order.add("second");
+                return "second";
+            });
+            // the retry of the oldest task becomes due while the only worker is busy
+            Thread.sleep(500);
+            release.countDown();
+            assertThat(blocker.get(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(List.of(retried.get(5, TimeUnit.SECONDS), first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS)))
+                    .containsExactly("retried", "first", "second");
+            assertThat(order).containsExactly("retried", "first", "second");
+        } finally {
+            scarce.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldCompleteExceptionallyWhenExhausted() {
+        final AtomicInteger executions = new AtomicInteger();
+        final Future<Object> future = executorService.submit(() -> {
+            executions.incrementAndGet();
+            throw new IllegalStateException("Pow!");
+        });
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS)).isExactlyInstanceOf(ExecutionException.class)
+                .getCause().isExactlyInstanceOf(RetriesExhaustedException.class)
+                .hasMessage("Retries or executions exhausted after 5 executions");
+        assertThat(executions).hasValue(5);
+    }
+
+    @Test
+    void shouldCompleteExceptionallyOnNonIgnorableException() {
+        final Future<Object> future = executorService.submit(() -> {
+            throw new IllegalArgumentException("Boom!");
+        });
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS)).isExactlyInstanceOf(ExecutionException.class)
+                .getCause().isExactlyInstanceOf(RetryException.class).hasCauseExactlyInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldFinishRetriesBeforeTerminating() throws Exception {
+        final AtomicInteger executions = new AtomicInteger();
+        final Future<Integer> future = executorService.submit(() -> {
+            if (executions.incrementAndGet() < 3) {
+                throw new IllegalStateException("Pow!");
+            }
+            return executions.get();
+        });
+        executorService.shutdown();
+        assertThatThrownBy(() -> executorService.submit(() -> 1)).isExactlyInstanceOf(RejectedExecutionException.class);
+        assertThat(executorService.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executorService.isTerminated()).isTrue();
+        assertThat(future.get()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldCancelOutstandingTasksOnShutdownNow() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final Future<Object> running = executorService.submit(() -> {
+            started.countDown();
+            return new CountDownLatch(1).await(5, TimeUnit.SECONDS);
+        });
+        final Future<String> queued = executorService.submit(() -> "Yippie!");
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        final List<Runnable> pending = executorService.shutdownNow();
+        assertThat(pending).containsExactly((Runnable) queued);
+        assertThat(executorService.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executorService.isTerminated()).isTrue();
+        assertThatThrownBy(queued::get).isInstanceOf(CancellationException.class);
+        assertThat(running).isCancelled();
+    }
+}
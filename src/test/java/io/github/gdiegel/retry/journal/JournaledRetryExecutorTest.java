@@ -0,0 +1,172 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.journal;
+
+import io.github.gdiegel.retry.collaborators.InvocationCounter;
+import io.github.gdiegel.retry.exception.RetriesExhaustedException;
+import io.github.gdiegel.retry.exception.RetryAfterException;
+import io.github.gdiegel.retry.exception.RetryException;
+import io.github.gdiegel.retry.policy.RetryPolicy;
+import io.github.gdiegel.retry.policy.RetryPolicyBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JournaledRetryExecutorTest {
+
+    private static final RetryPolicy<Long> RETRY_POLICY = RetryPolicy.<Long>builder()
+            .withInterval(Duration.ZERO)
+            .withTimeout(Duration.ofMinutes(1))
+            .withMaximumExecutions(5)
+            .build();
+
+    @Test
+    void shouldCompleteJournalEntryWhenComputationEnds(@TempDir final Path directory) throws IOException {
+        try (RetryJournal journal = RetryJournal.open(directory.resolve("retry.journal"))) {
+            final InvocationCounter invocationCounter = new InvocationCounter();
+            assertThat(new JournaledRetryExecutor<>(RETRY_POLICY, journal).execute("job", invocationCounter::invoke)).contains(5L);
+            assertThat(journal.state("job")).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldRecordProgressAfterEveryExecution(@TempDir final Path directory) throws IOException {
+        try (RetryJournal journal = RetryJournal.open(directory.resolve("retry.journal"))) {
+            final long[] recorded = new long[1];
+            new JournaledRetryExecutor<>(RETRY_POLICY, journal).execute("job", () -> {
+                recorded[0] = journal.state("job").map(RetryState::executions).orElse(-1L);
+                return 1L;
+            });
+            assertThat(recorded[0]).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void shouldResumeInterruptedComputation(@TempDir final Path directory) throws IOException {
+        final Path file = directory.resolve("retry.journal");
+        try (RetryJournal journal = RetryJournal.open(file)) {
+            journal.record(new RetryState("job", 3, Instant.now().plus(Duration.ofMinutes(1)), Instant.now()));
+        }
+        try (RetryJournal journal = RetryJournal.open(file)) {
+            final InvocationCounter invocationCounter = new InvocationCounter();
+            assertThat(new JournaledRetryExecutor<>(RETRY_POLICY, journal).execute("job", invocationCounter::invoke)).contains(2L);
+        }
+    }
+
+    @Test
+    void shouldKeepInterruptedComputationInJournal(@TempDir final Path directory) throws Exception {
+        final Path file = directory.resolve("retry.journal");
+        final RetryPolicy<String> retryPolicy = RetryPolicy.<String>builder()
+                .withInterval(Duration.ofSeconds(10))
+                .withTimeout(Duration.ofMinutes(1))
+                .retryUntil("done"::equals)
+                .build();
+        final AtomicInteger executions = new AtomicInteger();
+        final AtomicReference<Throwable> thrown = new AtomicReference<>();
+        final AtomicBoolean interruptStatus = new AtomicBoolean();
+        try (RetryJournal journal = RetryJournal.open(file)) {
+            final CountDownLatch executed = new CountDownLatch(1);
+            final Thread worker = new Thread(() -> {
+                try {
+                    new JournaledRetryExecutor<>(retryPolicy, journal).execute("job", () -> {
+                        executions.incrementAndGet();
+                        executed.countDown();
+                        return "pending";
+                    });
+                } catch (final RuntimeException e) {
+                    thrown.set(e);
+                }
+                interruptStatus.set(Thread.currentThread().isInterrupted());
+            });
+            worker.start();
+            assertThat(executed.await(5, TimeUnit.SECONDS)).isTrue();
+            // interrupt while waiting for the next execution
+            while (worker.getState() != Thread.State.TIMED_WAITING) {
+                Thread.onSpinWait();
+            }
+            worker.interrupt();
+            worker.join(5_000);
+            assertThat(worker.isAlive()).isFalse();
+        }
+        assertThat(thrown.get()).isExactlyInstanceOf(RetryException.class).hasCauseExactlyInstanceOf(InterruptedException.class);
+        assertThat(interruptStatus).isTrue();
+        try (RetryJournal journal = RetryJournal.open(file)) {
+            assertThat(journal.state("job")).map(RetryState::executions).contains(1L);
+            final JournaledRetryExecutor<String> retryExecutor = new JournaledRetryExecutor<>(retryPolicy, journal, Clock.systemUTC(), duration -> {
+            });
+            assertThat(retryExecutor.execute("job", () -> executions.incrementAndGet() == 2 ? "done" : "pending")).contains("done");
+            assertThat(executions).hasValue(2);
+            assertThat(journal.state("job")).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldBeExhaustedWhenDeadlinePassedDuringRestart(@TempDir final Path directory) throws IOException {
+        try (RetryJournal journal = RetryJournal.open(directory.resolve("retry.journal"))) {
+            journal.record(new RetryState("job", 1, Instant.now().minus(Duration.ofMinutes(1)), Instant.now()));
+            final RetryPolicy<Long> retryPolicy = RetryPolicy.<Long>builder().throwing(true).build();
+            final InvocationCounter invocationCounter = new InvocationCounter();
+            assertThatThrownBy(() -> new JournaledRetryExecutor<>(retryPolicy, journal).execute("job", invocationCounter::invoke))
+                    .isExactlyInstanceOf(RetriesExhaustedException.class);
+            assertThat(invocationCounter.getInvocations()).isZero();
+            assertThat(journal.state("job")).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldReturnResultWhenJournalIsClosedDuringComputation(@TempDir final Path directory) throws IOException {
+        final RetryJournal journal = RetryJournal.open(directory.resolve("retry.journal"));
+        final InvocationCounter invocationCounter = new InvocationCounter();
+        assertThat(new JournaledRetryExecutor<>(RETRY_POLICY, journal).execute("job", () -> {
+            journal.close();
+            return invocationCounter.invoke();
+        })).contains(5L);
+    }
+
+    @Test
+    void shouldRecordSuggestedDelayAsNextDue(@TempDir final Path directory) throws IOException {
+        final Instant now = Instant.parse("2030-01-01T00:00:00Z");
+        try (RetryJournal journal = RetryJournal.open(directory.resolve("retry.journal"))) {
+            final RetryPolicy<Long> retryPolicy = RetryPolicyBuilder.from(RETRY_POLICY)
+                    .withMaximumExecutions(2)
+                    .ignoreWhen(RetryAfterException.class::isInstance)
+                    .build();
+            final List<Instant> nextDue = new ArrayList<>();
+            final JournaledRetryExecutor<Long> retryExecutor = new JournaledRetryExecutor<>(retryPolicy, journal, Clock.fixed(now, ZoneOffset.UTC),
+                    duration -> nextDue.add(journal.state("job").orElseThrow().nextDue()));
+            retryExecutor.execute("job", () -> {
+                throw new RetryAfterException(Duration.ofSeconds(30));
+            });
+            assertThat(nextDue).containsExactly(now.plusSeconds(30));
+        }
+    }
+}
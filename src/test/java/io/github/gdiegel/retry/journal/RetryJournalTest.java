@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetryJournalTest {
+
+    private static final Instant DEADLINE = Instant.parse("2030-01-01T00:00:00Z");
+    private static final Instant NEXT_DUE = Instant.parse("2029-12-31T23:59:00Z");
+
+    @Test
+    void shouldReplayLatestStatesAfterReopening(@TempDir final Path directory) throws IOException {
+        final Path file = directory.resolve("retry.journal");
+        try (RetryJournal journal = RetryJournal.open(file)) {
+            journal.record(new RetryState("provisioning", 1, DEADLINE, NEXT_DUE));
+            journal.record(new RetryState("provisioning", 2, DEADLINE, NEXT_DUE));
+            journal.record(new RetryState("dns-propagation", 7, DEADLINE, NEXT_DUE));
+            journal.complete("dns-propagation");
+        }
+        try (RetryJournal journal = RetryJournal.open(file)) {
+            assertThat(journal.states()).containsOnlyKeys("provisioning");
+            assertThat(journal.state("provisioning")).contains(new RetryState("provisioning", 2, DEADLINE, NEXT_DUE));
+            assertThat(journal.state("dns-propagation")).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldCompactWhenFull(@TempDir final Path directory) throws IOException {
+        final Path file = directory.resolve("retry.journal");
+        try (RetryJournal journal = RetryJournal.open(file, 256)) {
+            for (int executions = 0; executions < 1_000; executions++) {
+                journal.record(new RetryState("provisioning", executions, DEADLINE, NEXT_DUE));
+            }
+            journal.record(new RetryState("completed", 1, DEADLINE, NEXT_DUE));
+            journal.complete("completed");
+        }
+        assertThat(Files.size(file)).isEqualTo(256);
+        try (RetryJournal journal = RetryJournal.open(file)) {
+            assertThat(journal.states()).containsOnlyKeys("provisioning");
+            assertThat(journal.state("provisioning")).hasValueSatisfying(state -> assertThat(state.executions()).isEqualTo(999));
+        }
+    }
+
+    @Test
+    void shouldCompactOnceAQuarterIsObsolete(@TempDir final Path directory) throws IOException {
+        final Path file = directory.resolve("retry.journal");
+        try (RetryJournal journal = RetryJournal.open(file, 4096)) {
+            for (int executions = 0; executions < 100; executions++) {
+                journal.record(new RetryState("provisioning", executions, DEADLINE, NEXT_DUE));
+            }
+        }
+        // 100 records of 38 bytes would reach far beyond the first half of the file without compaction
+        final byte[] contents = Files.readAllBytes(file);
+        assertThat(contents).hasSize(4096);
+        assertThat(Arrays.copyOfRange(contents, 2048, 4096)).containsOnly(0);
+        try (RetryJournal journal = RetryJournal.open(file)) {
+            assertThat(journal.state("provisioning")).hasValueSatisfying(state -> assertThat(state.executions()).isEqualTo(99));
+        }
+    }
+
+    @Test
+    void shouldGrowWhenLiveStatesDoNotFit(@TempDir final Path directory) throws IOException {
+        final Path file = directory.resolve("retry.journal");
+        try (RetryJournal journal = RetryJournal.open(file, 64)) {
+            for (int key = 0; key < 100; key++) {
+                journal.record(new RetryState("job-" + key, key, DEADLINE, NEXT_DUE));
+            }
+        }
+        try (RetryJournal journal = RetryJournal.open(file)) {
+            assertThat(journal.states()).hasSize(100);
+        }
+    }
+
+    @Test
+    void shouldRejectFilesWhichAreNotJournals(@TempDir final Path directory) throws IOException {
+        final Path file = Files.writeString(directory.resolve("retry.journal"), "inventory.interval=PT1S");
+        assertThatThrownBy(() -> RetryJournal.open(file)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void shouldLockJournalWhileOpen(@TempDir final Path directory) throws IOException {
+        final Path file = directory.resolve("retry.journal");
+        try (RetryJournal journal = RetryJournal.open(file)) {
+            journal.record(new RetryState("job", 1, DEADLINE, NEXT_DUE));
+            assertThatThrownBy(() -> RetryJournal.open(file)).isExactlyInstanceOf(IOException.class).hasMessageContaining("locked");
+            journal.compact();
+            assertThatThrownBy(() -> RetryJournal.open(file)).isExactlyInstanceOf(IOException.class).hasMessageContaining("locked");
+        }
+        try (RetryJournal journal = RetryJournal.open(file)) {
+            assertThat(journal.state("job")).isPresent();
+        }
+    }
+}
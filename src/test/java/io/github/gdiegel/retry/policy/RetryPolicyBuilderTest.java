@@ -15,15 +15,36 @@
  */
 package io.github.gdiegel.retry.policy;
 
+import io.github.gdiegel.retry.BaseTest;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
-class RetryPolicyBuilderTest {
+class RetryPolicyBuilderTest extends BaseTest {
 
     @Test
     void canCreateBuilderFromRetryPolicyBuilder() {
         final RetryPolicyBuilder<Integer> builder = RetryPolicyBuilder.instance();
         assertThat(builder).isNotNull();
     }
-}
\ No newline at end of file
+
+    @Test
+    void canCreateBuilderFromExistingRetryPolicy() {
+        final RetryPolicy<Integer> retryPolicy = RetryPolicyBuilder.from(RETRY_POLICY).build();
+        assertThat(retryPolicy).isEqualTo(RETRY_POLICY);
+        assertThat(RetryPolicyBuilder.from(RETRY_POLICY).withInterval(Duration.ZERO).build().interval()).isZero();
+    }
+
+    @Test
+    void shouldRejectInvalidIntervalBounds() {
+        final RetryPolicyBuilder<Integer> builder = RetryPolicyBuilder.instance();
+        assertThatThrownBy(() -> builder.withIntervalBounds(Duration.ofSeconds(2), Duration.ofSeconds(1)))
+                .isExactlyInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Minimum interval: [PT2S], maximum interval: [PT1S]");
+        assertThatThrownBy(() -> builder.withIntervalBounds(Duration.ofSeconds(-1), Duration.ofSeconds(1)))
+                .isExactlyInstanceOf(IllegalArgumentException.class);
+    }
+}
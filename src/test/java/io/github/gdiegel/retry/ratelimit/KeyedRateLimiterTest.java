@@ -0,0 +1,119 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.ratelimit;
+
+import io.github.gdiegel.retry.collaborators.ManualTicker;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyedRateLimiterTest {
+
+    private final ManualTicker ticker = new ManualTicker();
+
+    @Test
+    void shouldPaceExecutionsEvenly() {
+        final KeyedRateLimiter<String> rateLimiter = KeyedRateLimiter.<String>builder().withPermitsPerSecond(10).withTicker(ticker).build();
+        assertThat(rateLimiter.reserve("host")).isZero();
+        assertThat(rateLimiter.reserve("host")).isEqualTo(Duration.ofMillis(100));
+        assertThat(rateLimiter.reserve("host")).isEqualTo(Duration.ofMillis(200));
+        ticker.advance(Duration.ofMillis(300));
+        assertThat(rateLimiter.reserve("host")).isZero();
+    }
+
+    @Test
+    void shouldAllowBurstAfterIdling() {
+        final KeyedRateLimiter<String> rateLimiter = KeyedRateLimiter.<String>builder().withPermitsPerSecond(10).withBurst(3).withTicker(ticker).build();
+        assertThat(rateLimiter.reserve("host")).isZero();
+        assertThat(rateLimiter.reserve("host")).isZero();
+        assertThat(rateLimiter.reserve("host")).isZero();
+        assertThat(rateLimiter.reserve("host")).isEqualTo(Duration.ofMillis(100));
+    }
+
+    @Test
+    void shouldLimitKeysIndependently() {
+        final KeyedRateLimiter<String> rateLimiter = KeyedRateLimiter.<String>builder().withPermitsPerSecond(1).withTicker(ticker).build();
+        assertThat(rateLimiter.reserve("a")).isZero();
+        assertThat(rateLimiter.reserve("b")).isZero();
+        assertThat(rateLimiter.reserve("a")).isEqualTo(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void shouldEvictIdleKeys() {
+        final KeyedRateLimiter<String> rateLimiter = KeyedRateLimiter.<String>builder().withExpireAfterIdle(Duration.ofSeconds(10)).withTicker(ticker).build();
+        rateLimiter.reserve("a");
+        rateLimiter.reserve("b");
+        assertThat(rateLimiter.size()).isEqualTo(2);
+        ticker.advance(Duration.ofSeconds(11));
+        assertThat(rateLimiter.size()).isZero();
+    }
+
+    @Test
+    void shouldNotEvictKeysWithPermitsReservedAhead() {
+        final KeyedRateLimiter<String> rateLimiter = KeyedRateLimiter.<String>builder().withPermitsPerSecond(1)
+                .withExpireAfterIdle(Duration.ofSeconds(10)).withTicker(ticker).build();
+        IntStream.range(0, 60).forEach(i -> rateLimiter.reserve("host"));
+        ticker.advance(Duration.ofSeconds(11));
+        assertThat(rateLimiter.reserve("host")).isEqualTo(Duration.ofSeconds(49));
+        assertThat(rateLimiter.size()).isOne();
+        ticker.advance(Duration.ofSeconds(60));
+        assertThat(rateLimiter.size()).isZero();
+    }
+
+    @Test
+    void shouldHandOutDistinctSlotsToConcurrentCallers() throws InterruptedException {
+        final KeyedRateLimiter<String> rateLimiter = KeyedRateLimiter.<String>builder().withPermitsPerSecond(1000).withTicker(ticker).build();
+        final ConcurrentHashMap<Duration, Boolean> slots = new ConcurrentHashMap<>();
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        IntStream.range(0, 1000).forEach(i -> executorService.execute(() -> slots.put(rateLimiter.reserve("host"), true)));
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(slots).hasSize(1000).containsKey(Duration.ofMillis(999));
+    }
+
+    @Test
+    void shouldProvidePacerForKey() {
+        final KeyedRateLimiter<String> rateLimiter = KeyedRateLimiter.<String>builder().withPermitsPerSecond(2).withTicker(ticker).build();
+        final Pacer pacer = rateLimiter.pacerFor(() -> "tenant");
+        assertThat(pacer.reserve()).isZero();
+        assertThat(rateLimiter.reserve("tenant")).isEqualTo(Duration.ofMillis(500));
+    }
+
+    @Test
+    void shouldNotReservePermitWhenWaitExceedsMaximum() {
+        final KeyedRateLimiter<String> rateLimiter = KeyedRateLimiter.<String>builder().withPermitsPerSecond(1).withTicker(ticker).build();
+        final Pacer pacer = rateLimiter.pacerFor(() -> "tenant");
+        assertThat(pacer.tryReserve(Duration.ZERO)).contains(Duration.ZERO);
+        assertThat(pacer.tryReserve(Duration.ofMillis(999))).isEmpty();
+        assertThat(pacer.tryReserve(Duration.ofSeconds(1))).contains(Duration.ofSeconds(1));
+        assertThat(rateLimiter.reserve("tenant")).isEqualTo(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void shouldRejectInvalidConfiguration() {
+        assertThatThrownBy(() -> KeyedRateLimiter.builder().withPermitsPerSecond(0)).isExactlyInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeyedRateLimiter.builder().withBurst(0)).isExactlyInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeyedRateLimiter.<String>builder().build().reserve(null)).isExactlyInstanceOf(NullPointerException.class);
+    }
+}
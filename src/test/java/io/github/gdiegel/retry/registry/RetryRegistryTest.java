@@ -0,0 +1,170 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.registry;
+
+import io.github.gdiegel.retry.collaborators.InvocationCounter;
+import io.github.gdiegel.retry.executor.RetryExecutor;
+import io.github.gdiegel.retry.policy.RetryPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetryRegistryTest {
+
+    private static final RetryPolicy<Long> RETRY_POLICY = RetryPolicy.<Long>builder()
+            .withInterval(Duration.ZERO)
+            .withMaximumExecutions(3)
+            .retryUntil(invocations -> invocations > 100)
+            .build();
+
+    @Test
+    void shouldHoldRegisteredPolicies() {
+        final RetryRegistry registry = new RetryRegistry().register("inventory", RETRY_POLICY);
+        assertThat(registry.names()).containsExactly("inventory");
+        assertThat(registry.<Long>policy("inventory")).isEqualTo(RETRY_POLICY);
+        assertThatThrownBy(() -> registry.policy("billing")).isExactlyInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> registry.executor("billing")).isExactlyInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldOverrideRegisteredPolicyAndKeepPredicates() {
+        final Properties properties = new Properties();
+        properties.setProperty("inventory.maximumExecutions", "5");
+        properties.setProperty("inventory.timeout", "PT10S");
+        final RetryRegistry registry = new RetryRegistry().register("inventory", RETRY_POLICY).load(properties);
+        final RetryPolicy<Long> retryPolicy = registry.policy("inventory");
+        assertThat(retryPolicy.maximumExecutions()).isEqualTo(5);
+        assertThat(retryPolicy.timeout()).isEqualTo(Duration.ofSeconds(10));
+        assertThat(retryPolicy.interval()).isEqualTo(Duration.ZERO);
+        assertThat(retryPolicy.stopCondition()).isSameAs(RETRY_POLICY.stopCondition());
+    }
+
+    @Test
+    void shouldDefinePoliciesFromProperties() {
+        final Properties properties = new Properties();
+        properties.setProperty("billing.api.interval", "PT1S");
+        final RetryRegistry registry = new RetryRegistry().load(properties);
+        assertThat(registry.policy("billing.api").interval()).isEqualTo(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void shouldRetainPoliciesWhenPropertiesAreInvalid() {
+        final RetryRegistry registry = new RetryRegistry().register("inventory", RETRY_POLICY);
+        final Properties properties = new Properties();
+        properties.setProperty("inventory.interval", "one second");
+        assertThatThrownBy(() -> registry.load(properties)).isExactlyInstanceOf(IllegalArgumentException.class);
+        properties.clear();
+        properties.setProperty("inventory.jitter", "PT1S");
+        assertThatThrownBy(() -> registry.load(properties)).isExactlyInstanceOf(IllegalArgumentException.class);
+        properties.clear();
+        properties.setProperty("inventory.throwing", "ture");
+        assertThatThrownBy(() -> registry.load(properties)).isExactlyInstanceOf(IllegalArgumentException.class);
+        assertThat(registry.<Long>policy("inventory")).isEqualTo(RETRY_POLICY);
+    }
+
+    @Test
+    void shouldFollowPolicyInEffectWhenExecuting() {
+        final RetryRegistry registry = new RetryRegistry().register("inventory", RETRY_POLICY);
+        final RetryExecutor<Long> executor = registry.executor("inventory");
+        assertThat(executor.execute(new InvocationCounter()::invoke)).contains(3L);
+        final Properties properties = new Properties();
+        properties.setProperty("inventory.maximumExecutions", "7");
+        registry.load(properties);
+        assertThat(executor.execute(new InvocationCounter()::invoke)).contains(7L);
+    }
+
+    @Test
+    void shouldReloadWatchedFile(@TempDir final Path directory) throws IOException, InterruptedException {
+        final Path file = directory.resolve("retry.properties");
+        Files.writeString(file, "inventory.maximumExecutions=2\n");
+        try (RetryRegistry registry = new RetryRegistry().register("inventory", RETRY_POLICY).watch(file)) {
+            assertThat(registry.policy("inventory").maximumExecutions()).isEqualTo(2);
+            Files.writeString(file, "inventory.maximumExecutions=4\n");
+            final long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+            while (registry.policy("inventory").maximumExecutions() != 4 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(registry.policy("inventory").maximumExecutions()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void shouldNotLoadHalfWrittenFile(@TempDir final Path directory) throws IOException, InterruptedException {
+        final Path file = directory.resolve("retry.properties");
+        Files.writeString(file, "reports.maximumExecutions=2\n");
+        try (RetryRegistry registry = new RetryRegistry().watch(file)) {
+            final AtomicBoolean disappeared = new AtomicBoolean();
+            final Thread observer = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    disappeared.compareAndSet(false, !registry.names().contains("reports"));
+                }
+            });
+            observer.start();
+            try (Writer writer = Files.newBufferedWriter(file)) {
+                writer.flush();
+                Thread.sleep(10);
+                writer.write("reports.maximumExecutions=4\n");
+            }
+            final long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+            while (registry.policy("reports").maximumExecutions() != 4 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            observer.interrupt();
+            observer.join();
+            assertThat(registry.policy("reports").maximumExecutions()).isEqualTo(4);
+            assertThat(disappeared).isFalse();
+        }
+    }
+
+    @Test
+    void shouldReloadWhileOtherFilesInDirectoryChange(@TempDir final Path directory) throws IOException, InterruptedException {
+        final Path file = directory.resolve("retry.properties");
+        Files.writeString(file, "reports.maximumExecutions=2\n");
+        final Thread logger = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Files.writeString(directory.resolve("application.log"), "tick\n", StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                    Thread.sleep(10);
+                }
+            } catch (final IOException | InterruptedException e) {
+                // stop logging
+            }
+        });
+        try (RetryRegistry registry = new RetryRegistry().watch(file)) {
+            logger.start();
+            Files.writeString(file, "reports.maximumExecutions=4\n");
+            final long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+            while (registry.policy("reports").maximumExecutions() != 4 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(registry.policy("reports").maximumExecutions()).isEqualTo(4);
+        } finally {
+            logger.interrupt();
+            logger.join();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ *  Copyright 2021 Gabriel Diegel
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.github.gdiegel.retry.simulation;
+
+import io.github.gdiegel.retry.policy.RetryPolicy;
+import io.github.gdiegel.retry.policy.RetryPolicyBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class RetrySimulatorTest {
+
+    private static final RetryPolicy<Boolean> RETRY_POLICY = RetryPolicy.<Boolean>builder()
+            .withInterval(Duration.ofMillis(100))
+            .withTimeout(Duration.ofSeconds(10))
+            .withMaximumExecutions(5)
+            .ignoreWhen(e -> e instanceof SimulatedFailureException)
+            .retryUntil(ready -> ready)
+            .build();
+
+    @Test
+    void shouldSucceedOnFirstExecutionWhenDependencyNeverFails() {
+        final SimulationReport report = RetrySimulator.<Boolean>builder()
+                .withRetryPolicy(RETRY_POLICY)
+                .withResult(random -> true)
+                .withCalls(10_000)
+                .build()
+                .simulate();
+        assertThat(report.calls()).isEqualTo(10_000);
+        assertThat(report.successRate()).isEqualTo(1.0);
+        assertThat(report.loadAmplification()).isEqualTo(1.0);
+        assertThat(report.attemptDistribution()).containsOnlyKeys(1);
+    }
+
+    @Test
+    void shouldReportAmplificationAndExhaustionForFlakyDependency() {
+        final SimulationReport report = RetrySimulator.<Boolean>builder()
+                .withRetryPolicy(RETRY_POLICY)
+                .withResult(random -> true)
+                .withFaultModel(FaultModel.of(0.5, LatencyDistribution.constant(Duration.ofMillis(10))))
+                .withCalls(200_000)
+                .build()
+                .simulate();
+        // P(5 consecutive failures) = 1/32, expected executions = (1 - 1/32) / (1 - 1/2)
+        assertThat(report.exhaustionRate()).isCloseTo(1 / 32.0, within(0.005));
+        assertThat(report.loadAmplification()).isCloseTo(31 / 16.0, within(0.02));
+        assertThat(report.attemptDistribution()).containsOnlyKeys(1, 2, 3, 4, 5);
+        assertThat(report.latencyPercentile(0)).isCloseTo(Duration.ofMillis(10), Duration.ofMillis(1));
+        assertThat(report.latencyPercentile(100)).isCloseTo(Duration.ofMillis(450), Duration.ofMillis(5));
+    }
+
+    @Test
+    void shouldExhaustCallsDuringOutage() {
+        final SimulationReport report = RetrySimulator.<Boolean>builder()
+                .withRetryPolicy(RETRY_POLICY)
+                .withResult(random -> true)
+                .withFaultModel(FaultModel.of(0, LatencyDistribution.constant(Duration.ofMillis(1)))
+                        .withOutage(Duration.ZERO, Duration.ofMinutes(2)))
+                .withHorizon(Duration.ofMinutes(1))
+                .withCalls(1_000)
+                .build()
+                .simulate();
+        assertThat(report.exhaustionRate()).isEqualTo(1.0);
+        assertThat(report.loadAmplification()).isEqualTo(5.0);
+    }
+
+    @Test
+    void shouldReportFailureOnNonIgnorableException() {
+        final SimulationReport report = RetrySimulator.<Boolean>builder()
+                .withRetryPolicy(RETRY_POLICY)
+                .withResult(random -> true)
+                .withFaultModel(FaultModel.of(1, LatencyDistribution.exponential(Duration.ofMillis(5))))
+                .withFailure(IllegalStateException::new)
+                .withCalls(1_000)
+                .build()
+                .simulate();
+        assertThat(report.failureRate()).isEqualTo(1.0);
+        assertThat(report.attempts()).isEqualTo(1_000);
+    }
+
+    @Test
+    void shouldBeDeterministicForSameSeed() {
+        final RetrySimulatorBuilder<Boolean> builder = RetrySimulator.<Boolean>builder()
+                .withRetryPolicy(RETRY_POLICY)
+                .withResult(random -> random.nextInt(3) == 0)
+                .withFaultModel(FaultModel.of(0.2, LatencyDistribution.logNormal(Duration.ofMillis(20), 0.5)))
+                .withCalls(50_000)
+                .withSeed(42);
+        assertThat(builder.build().simulate().toString()).isEqualTo(builder.build().simulate().toString());
+    }
+
+    @Test
+    void shouldRequireRetryPolicyAndResult() {
+        assertThatThrownBy(() -> RetrySimulator.<Boolean>builder().withResult(random -> true).build())
+                .isExactlyInstanceOf(NullPointerException.class);
+        assertThatThrownBy(() -> RetrySimulator.<Boolean>builder().withRetryPolicy(RETRY_POLICY).build())
+                .isExactlyInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    void shouldRejectPacedRetryPolicy() {
+        final RetryPolicy<Boolean> pacedPolicy = RetryPolicyBuilder.from(RETRY_POLICY).withPacer(() -> Duration.ofSeconds(1)).build();
+        assertThatThrownBy(() -> RetrySimulator.<Boolean>builder().withRetryPolicy(pacedPolicy).withResult(random -> true).build())
+                .isExactlyInstanceOf(IllegalArgumentException.class);
+        assertThat(RetrySimulator.<Boolean>builder().withRetryPolicy(RETRY_POLICY).withResult(random -> true).build()).isNotNull();
+    }
+}